@@ -8,15 +8,19 @@ package com.github.dozedoff.commonj.file;
 import java.io.File;
 import java.nio.file.Path;
 
+import com.github.dozedoff.commonj.hash.HashValue;
+
 // TODO move to aid project
 
 /**
- * A simple storage class for file information.
+ * A simple storage class for file information. The hash can be stored either as a hex {@link String} or as a binary
+ * {@link HashValue}, the latter uses less memory and is converted to hex only on request.
  */
 public class FileInfo {
 	private Path file;
 	private long size = -1L;
 	private String hash;
+	private HashValue hashValue;
 
 	/**
 	 * Create a new {@link FileInfo} with the given {@link File} and hash.
@@ -97,14 +101,27 @@ public class FileInfo {
 	}
 
 	/**
-	 * Get the hash of this file.
+	 * Get the hash of this file. If the hash was set as {@link HashValue}, it is converted to hex.
 	 * 
 	 * @return the hash of the file or null if not set
 	 */
 	public String getHash() {
+		if (hashValue != null) {
+			return hashValue.toHex();
+		}
+
 		return hash;
 	}
 
+	/**
+	 * Get the binary hash of this file.
+	 * 
+	 * @return the hash of the file or null if it was not set as {@link HashValue}
+	 */
+	public HashValue getHashValue() {
+		return hashValue;
+	}
+
 	/**
 	 * Set the path for this file
 	 * 
@@ -152,6 +169,18 @@ public class FileInfo {
 	 */
 	public void setHash(String hash) {
 		this.hash = hash;
+		this.hashValue = null;
+	}
+
+	/**
+	 * Set the binary hash of this file. Replaces a hash set with {@link #setHash(String)}.
+	 * 
+	 * @param hashValue
+	 *            of this file
+	 */
+	public void setHashValue(HashValue hashValue) {
+		this.hashValue = hashValue;
+		this.hash = null;
 	}
 
 	/**
@@ -160,7 +189,7 @@ public class FileInfo {
 	 * @return true if set
 	 */
 	public boolean hasHash() {
-		return hash == null ? false : true;
+		return hash == null && hashValue == null ? false : true;
 	}
 
 	/**
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks a directory tree with several threads. Every directory is listed by its own fork-join task, and files are
+ * passed to the handler as soon as they are found, so the handler can start processing them while the walk is still
+ * running. This helps on network filesystems and directories with a large fan-out, where listing is slow.
+ * <p>
+ * Like {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}, symbolic links are not followed. The handler is
+ * called from several threads at once and must be thread safe.
+ * </p>
+ */
+public class ParallelFileWalker {
+	private final int parallelism;
+
+	/**
+	 * Receives the files found by the walk.
+	 */
+	@FunctionalInterface
+	public interface FileHandler {
+		/**
+		 * Handle a file that was found by the walk.
+		 * 
+		 * @param file
+		 *            that was found
+		 * @param attrs
+		 *            of the file
+		 * @throws IOException
+		 *             to abort the walk
+		 */
+		void accept(Path file, BasicFileAttributes attrs) throws IOException;
+	}
+
+	/**
+	 * Create a new walker that lists up to the given number of directories at once.
+	 * 
+	 * @param parallelism
+	 *            number of threads used for the walk, must be greater than 0
+	 */
+	public ParallelFileWalker(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be greater than 0");
+		}
+
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Walk the tree starting at the given path and pass all files that are not directories to the handler. Returns once
+	 * the whole tree has been walked.
+	 * 
+	 * @param start
+	 *            directory to start the walk from. If this is a file, only the file is passed to the handler
+	 * @param handler
+	 *            to receive the found files
+	 * @throws IOException
+	 *             if there is an error accessing the filesystem or the handler throws one. The walk is aborted, and
+	 *             the handler is not called after this is thrown
+	 */
+	public void walk(Path start, FileHandler handler) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(start, BasicFileAttributes.class);
+
+		if (!attrs.isDirectory()) {
+			handler.accept(start, attrs);
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		AtomicBoolean aborted = new AtomicBoolean();
+
+		try {
+			pool.invoke(new DirectoryTask(start, handler, aborted));
+			pool.shutdown();
+		} catch (UncheckedIOException e) {
+			aborted.set(true);
+			pool.shutdownNow();
+			awaitTermination(pool);
+			throw e.getCause();
+		} catch (RuntimeException | Error e) {
+			aborted.set(true);
+			pool.shutdownNow();
+			awaitTermination(pool);
+			throw e;
+		}
+	}
+
+	/**
+	 * Wait for tasks that are still running, so that the handler is not called after the walk has returned.
+	 */
+	private static void awaitTermination(ForkJoinPool pool) throws InterruptedIOException {
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the walk to stop");
+		}
+	}
+
+	/**
+	 * Calls the handler as a blocking operation, so that the pool can add a thread while the handler waits, for
+	 * example on a full queue.
+	 */
+	private static class HandlerCall implements ForkJoinPool.ManagedBlocker {
+		private final FileHandler handler;
+		private final Path file;
+		private final BasicFileAttributes attrs;
+		private IOException error;
+		private boolean done;
+
+		HandlerCall(FileHandler handler, Path file, BasicFileAttributes attrs) {
+			this.handler = handler;
+			this.file = file;
+			this.attrs = attrs;
+		}
+
+		@Override
+		public boolean block() {
+			try {
+				handler.accept(file, attrs);
+			} catch (IOException e) {
+				error = e;
+			}
+
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+
+		void call() throws IOException {
+			try {
+				ForkJoinPool.managedBlock(this);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while handling " + file);
+			}
+
+			if (error != null) {
+				throw error;
+			}
+		}
+	}
+
+	private static class DirectoryTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Path directory;
+		private final transient FileHandler handler;
+		private final AtomicBoolean aborted;
+
+		DirectoryTask(Path directory, FileHandler handler, AtomicBoolean aborted) {
+			this.directory = directory;
+			this.handler = handler;
+			this.aborted = aborted;
+		}
+
+		@Override
+		protected void compute() {
+			List<DirectoryTask> subdirectories = new ArrayList<>();
+
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+				for (Path entry : entries) {
+					if (aborted.get()) {
+						break;
+					}
+
+					BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+							LinkOption.NOFOLLOW_LINKS);
+
+					if (attrs.isDirectory()) {
+						if (aborted.get()) {
+							break;
+						}
+
+						DirectoryTask task = new DirectoryTask(entry, handler, aborted);
+						task.fork();
+						subdirectories.add(task);
+					} else {
+						new HandlerCall(handler, entry, attrs).call();
+					}
+				}
+			} catch (IOException e) {
+				aborted.set(true);
+				throw new UncheckedIOException(e);
+			}
+
+			for (DirectoryTask task : subdirectories) {
+				task.join();
+			}
+		}
+	}
+}
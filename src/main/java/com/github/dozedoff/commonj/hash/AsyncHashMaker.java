@@ -0,0 +1,348 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes files in the background and returns a {@link CompletableFuture} for each file. Calls never block: files are
+ * queued and at most the configured number of them are hashed at the same time on the executor.
+ * <p>
+ * Cancelling a future stops hashing of the file at the next read, so a large file does not keep a thread busy after
+ * its result is no longer needed. Files that are still queued when cancelled are not read at all.
+ * </p>
+ */
+public class AsyncHashMaker {
+	private final ConcurrentHashMaker hashMaker;
+	private final Executor executor;
+	private final ExecutorService ownExecutor;
+	private final int maxConcurrent;
+	private final AtomicInteger running = new AtomicInteger();
+	private final Queue<HashTask> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private volatile int maxPending = Integer.MAX_VALUE;
+	private volatile boolean shutdown;
+
+	/**
+	 * Opens the channel to hash.
+	 */
+	@FunctionalInterface
+	interface ChannelOpener {
+		ReadableByteChannel open() throws IOException;
+	}
+
+	/**
+	 * Create a new {@link AsyncHashMaker} using SHA-256 and its own pool with one thread per available processor.
+	 */
+	public AsyncHashMaker() {
+		this(HashMaker.DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Create a new {@link AsyncHashMaker} using its own pool with one thread per available processor.
+	 * 
+	 * @param algorithm
+	 *            to use for hashing, see {@link Digests}
+	 */
+	public AsyncHashMaker(String algorithm) {
+		this(algorithm, createPool(Runtime.getRuntime().availableProcessors()),
+				Runtime.getRuntime().availableProcessors(), true);
+	}
+
+	/**
+	 * Create a new {@link AsyncHashMaker} that hashes files on the given executor.
+	 * 
+	 * @param algorithm
+	 *            to use for hashing, see {@link Digests}
+	 * @param executor
+	 *            to run the hashing on
+	 * @param maxConcurrent
+	 *            maximum number of files hashed at the same time, must be greater than 0
+	 */
+	public AsyncHashMaker(String algorithm, Executor executor, int maxConcurrent) {
+		this(algorithm, executor, maxConcurrent, false);
+	}
+
+	AsyncHashMaker(String algorithm, Executor executor, int maxConcurrent, boolean ownsExecutor) {
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("Maximum concurrency must be greater than 0");
+		}
+
+		this.hashMaker = new ConcurrentHashMaker(algorithm);
+		this.executor = executor;
+		this.ownExecutor = ownsExecutor ? (ExecutorService) executor : null;
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	private static ExecutorService createPool(int threads) {
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Async hash worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Hash a file in the background.
+	 * 
+	 * @param file
+	 *            to hash
+	 * @return a future that completes with the hash, or exceptionally if the file could not be read. Cancel it to
+	 *         stop hashing
+	 */
+	public CompletableFuture<HashValue> hashAsync(Path file) {
+		return submit(() -> FileChannel.open(file, StandardOpenOption.READ));
+	}
+
+	CompletableFuture<HashValue> submit(ChannelOpener opener) {
+		HashTask task = new HashTask(opener);
+
+		if (shutdown) {
+			task.reject();
+			return task.future;
+		}
+
+		if (pendingCount.incrementAndGet() > maxPending) {
+			pendingCount.decrementAndGet();
+			task.future.completeExceptionally(new RejectedExecutionException("Too many files waiting to be hashed"));
+			return task.future;
+		}
+
+		pending.add(task);
+
+		if (shutdown) {
+			// shutdown may have drained the queue before the task was added
+			rejectPending();
+		}
+
+		schedule();
+		return task.future;
+	}
+
+	/**
+	 * Get the number of files waiting to be hashed.
+	 * 
+	 * @return number of queued files
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * Limit the number of files waiting to be hashed. Futures for files submitted while the limit is reached complete
+	 * exceptionally with a {@link RejectedExecutionException}. The default is no limit.
+	 * 
+	 * @param maxPending
+	 *            maximum number of queued files, must be greater than 0
+	 */
+	public void setMaxPending(int maxPending) {
+		if (maxPending <= 0) {
+			throw new IllegalArgumentException("Maximum pending files must be greater than 0");
+		}
+
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Stop hashing. Futures of queued files and of files submitted afterwards complete exceptionally with a
+	 * {@link RejectedExecutionException}. The pool created by this instance is stopped, which interrupts the files
+	 * being hashed. Files already being hashed on an executor passed to the constructor are finished.
+	 */
+	public void shutdown() {
+		shutdown = true;
+
+		if (ownExecutor != null) {
+			for (Runnable dropped : ownExecutor.shutdownNow()) {
+				if (dropped instanceof Worker) {
+					((Worker) dropped).first.reject();
+				}
+			}
+		}
+
+		rejectPending();
+	}
+
+	private void rejectPending() {
+		HashTask task;
+
+		while ((task = poll()) != null) {
+			task.reject();
+		}
+	}
+
+	/**
+	 * Start workers until the concurrency limit is reached or the queue is empty. Each worker is given its first task
+	 * here, so that it no longer counts as pending.
+	 */
+	private void schedule() {
+		while (acquireWorker()) {
+			HashTask task = poll();
+
+			if (task == null) {
+				running.decrementAndGet();
+				continue;
+			}
+
+			try {
+				executor.execute(new Worker(task));
+			} catch (RejectedExecutionException e) {
+				task.future.completeExceptionally(e);
+				running.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Reserve a worker slot if there are queued tasks and the limit has not been reached.
+	 */
+	private boolean acquireWorker() {
+		while (true) {
+			int current = running.get();
+
+			if (current >= maxConcurrent || pending.isEmpty()) {
+				return false;
+			}
+
+			if (running.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private HashTask poll() {
+		HashTask task = pending.poll();
+
+		if (task != null) {
+			pendingCount.decrementAndGet();
+		}
+
+		return task;
+	}
+
+	/**
+	 * Run the given task and then queued tasks until the queue is empty. Tasks are run in a loop rather than by
+	 * submitting the next one to the executor, so that executors which run tasks on the calling thread do not build
+	 * up a deep stack.
+	 */
+	private void work(HashTask first) {
+		HashTask task = first;
+
+		do {
+			try {
+				while (task != null) {
+					task.run();
+					task = poll();
+				}
+			} finally {
+				running.decrementAndGet();
+			}
+
+			// a task may have been added after the last poll, but before the decrement
+		} while (acquireWorker() && (task = pollOrRelease()) != null);
+	}
+
+	private HashTask pollOrRelease() {
+		HashTask task = poll();
+
+		if (task == null) {
+			running.decrementAndGet();
+		}
+
+		return task;
+	}
+
+	/**
+	 * Runs the given task and then queued tasks. A class instead of a lambda, so that the task can be failed if the
+	 * pool drops the worker on shutdown.
+	 */
+	private class Worker implements Runnable {
+		private final HashTask first;
+
+		Worker(HashTask first) {
+			this.first = first;
+		}
+
+		@Override
+		public void run() {
+			work(first);
+		}
+	}
+
+	private class HashTask implements Runnable {
+		private final ChannelOpener opener;
+		private final CompletableFuture<HashValue> future = new CompletableFuture<>();
+
+		HashTask(ChannelOpener opener) {
+			this.opener = opener;
+		}
+
+		@Override
+		public void run() {
+			if (!future.isDone()) {
+				hash();
+			}
+		}
+
+		void reject() {
+			future.completeExceptionally(new RejectedExecutionException("Hasher has been shut down"));
+		}
+
+		private void hash() {
+			try (ReadableByteChannel channel = opener.open()) {
+				future.complete(hashMaker.digestChannel(new CancellableChannel(channel, future)));
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Checks for cancellation before every read.
+	 */
+	private static class CancellableChannel implements ReadableByteChannel {
+		private final ReadableByteChannel channel;
+		private final CompletableFuture<?> future;
+
+		CancellableChannel(ReadableByteChannel channel, CompletableFuture<?> future) {
+			this.channel = channel;
+			this.future = future;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (future.isCancelled()) {
+				// an IOException, so the digest is reset
+				throw new IOException(new CancellationException("Hashing was cancelled"));
+			}
+
+			return channel.read(dst);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
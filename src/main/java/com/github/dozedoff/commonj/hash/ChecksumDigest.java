@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.security.MessageDigest;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * Adapter that exposes a 32 bit {@link Checksum} as a {@link MessageDigest}. The digest is the checksum value in big
+ * endian byte order.
+ */
+class ChecksumDigest extends MessageDigest {
+	private static final int DIGEST_LENGTH = 4;
+
+	private final Checksum checksum;
+
+	/**
+	 * Create a new digest for the checksum.
+	 * 
+	 * @param algorithm
+	 *            name of the checksum
+	 * @param checksumFactory
+	 *            creates the checksum to wrap
+	 */
+	ChecksumDigest(String algorithm, Supplier<Checksum> checksumFactory) {
+		super(algorithm);
+		this.checksum = checksumFactory.get();
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		checksum.update(input);
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		checksum.update(input, offset, len);
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return DIGEST_LENGTH;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		int value = (int) checksum.getValue();
+		checksum.reset();
+
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	@Override
+	protected void engineReset() {
+		checksum.reset();
+	}
+}
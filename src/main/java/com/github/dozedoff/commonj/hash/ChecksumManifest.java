@@ -0,0 +1,459 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.dozedoff.commonj.file.FileInfo;
+
+/**
+ * Writes and verifies checksum manifests in the format of sha256sum and related tools: one line per file with the
+ * lower case hex hash, two spaces and the path relative to the root directory, using / as separator. Paths containing
+ * a backslash or line break are escaped the same way as by sha256sum, so manifests can be checked with
+ * {@code sha256sum -c} and vice versa.
+ * <p>
+ * Both directions hash files in parallel and stream their input and output, so memory use does not grow with the
+ * number of files. Lines are written in the order files finish hashing, not in walk order.
+ * </p>
+ */
+public class ChecksumManifest {
+	private static final String SEPARATOR = "  ";
+	private static final int BATCH_SIZE = 256;
+	private static final int IN_FLIGHT_PER_THREAD = 4;
+	private static final int MAX_REPORTED_FAILURES = 10;
+
+	private final String algorithm;
+	private final int threads;
+
+	/**
+	 * Create a new {@link ChecksumManifest} for SHA-256, using one thread per available processor.
+	 */
+	public ChecksumManifest() {
+		this(HashMaker.DEFAULT_ALGORITHM, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a new {@link ChecksumManifest}.
+	 * 
+	 * @param algorithm
+	 *            to hash files with, see {@link Digests}
+	 * @param threads
+	 *            number of files hashed in parallel, must be greater than 0
+	 */
+	public ChecksumManifest(String algorithm, int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Thread count must be greater than 0");
+		}
+
+		this.algorithm = algorithm;
+		this.threads = threads;
+	}
+
+	/**
+	 * Hash all files below the root directory and write a manifest for them. If the manifest is inside the root
+	 * directory, it is not included.
+	 * 
+	 * @param root
+	 *            directory to create a manifest for
+	 * @param manifest
+	 *            file to write to
+	 * @return the job, with the number of hashed files
+	 * @throws IOException
+	 *             if there is an error walking the directory or writing the manifest, or if files could not be hashed.
+	 *             In the last case the manifest contains all other files
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting for the files to be hashed
+	 */
+	public HashJob write(Path root, Path manifest) throws IOException {
+		File manifestFile = manifest.toAbsolutePath().toFile();
+
+		try (Writer writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+			return write(root, writer, (dir, name) -> !new File(dir, name).getAbsoluteFile().equals(manifestFile));
+		}
+	}
+
+	/**
+	 * Hash all files below the root directory and write manifest lines for them. The writer is not closed.
+	 * 
+	 * @param root
+	 *            directory to create a manifest for
+	 * @param writer
+	 *            to write the lines to
+	 * @return the job, with the number of hashed files
+	 * @throws IOException
+	 *             if there is an error walking the directory or writing the lines, or if files could not be hashed. In
+	 *             the last case lines for all other files are written
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting for the files to be hashed
+	 */
+	public HashJob write(Path root, Writer writer) throws IOException {
+		return write(root, writer, null);
+	}
+
+	private HashJob write(Path root, Writer writer, FilenameFilter filter) throws IOException {
+		Path absoluteRoot = root.toAbsolutePath();
+		BufferedWriter out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+		ManifestSink sink = new ManifestSink(absoluteRoot, out);
+
+		DirectoryHasher hasher = new DirectoryHasher(sink, BATCH_SIZE, algorithm, threads, threads,
+				DirectoryHasher.DEFAULT_QUEUE_CAPACITY);
+		sink.hasher = hasher;
+
+		try {
+			if (filter != null) {
+				hasher.setFilter(filter);
+			}
+
+			HashJob job = hasher.hashDirectory(absoluteRoot.toString()).getCompletion().get();
+
+			if (sink.writeError != null) {
+				throw sink.writeError;
+			}
+
+			out.flush();
+
+			if (!sink.failed.isEmpty()) {
+				throw new IOException(failedMessage(root, sink.failed));
+			}
+
+			return job;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing manifest for " + root);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to walk " + root, e.getCause());
+		} finally {
+			hasher.shutdown();
+		}
+	}
+
+	private static String failedMessage(Path root, List<String> failed) {
+		StringBuilder message = new StringBuilder();
+		message.append("Could not hash ").append(failed.size()).append(" files below ").append(root).append(": ");
+		message.append(String.join(", ", failed.subList(0, Math.min(failed.size(), MAX_REPORTED_FAILURES))));
+
+		if (failed.size() > MAX_REPORTED_FAILURES) {
+			message.append(" and ").append(failed.size() - MAX_REPORTED_FAILURES).append(" more");
+		}
+
+		return message.toString();
+	}
+
+	/**
+	 * Check the files below the root directory against a manifest. Files are hashed in parallel while the manifest
+	 * is read, with a bounded number of files waiting to be hashed.
+	 * 
+	 * @param root
+	 *            directory the paths in the manifest are relative to
+	 * @param manifest
+	 *            to check against
+	 * @param stopOnFirstProblem
+	 *            if true, stop as soon as a file that does not match is found. Files that are already being hashed
+	 *            are still finished
+	 * @return the result of the verification
+	 * @throws IOException
+	 *             if the manifest cannot be read or contains an invalid line
+	 * @throws InterruptedIOException
+	 *             if interrupted while verifying
+	 */
+	public VerifyResult verify(Path root, Path manifest, boolean stopOnFirstProblem) throws IOException {
+		VerifyResult result = new VerifyResult();
+		ConcurrentHashMaker hashMaker = new ConcurrentHashMaker(algorithm);
+		Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+		AtomicBoolean stop = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Manifest verify");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+			String line;
+			int lineNumber = 0;
+
+			while ((line = reader.readLine()) != null && !stop.get()) {
+				lineNumber++;
+
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				Entry entry = parseLine(line, lineNumber);
+				inFlight.acquire();
+
+				executor.execute(() -> {
+					try {
+						if (!stop.get()) {
+							Status status = check(root, entry, hashMaker);
+							result.add(entry.path, status);
+
+							if (status != Status.OK && stopOnFirstProblem) {
+								stop.set(true);
+							}
+						}
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while verifying " + root);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		result.stopped = stop.get();
+		return result;
+	}
+
+	private static Status check(Path root, Entry entry, ConcurrentHashMaker hashMaker) {
+		Path file = root.resolve(entry.path);
+
+		if (!Files.isRegularFile(file)) {
+			return Status.MISSING;
+		}
+
+		HashValue actual = hashMaker.digestFile(file);
+
+		if (actual == null) {
+			return Status.FAILED;
+		}
+
+		return actual.equals(entry.hash) ? Status.OK : Status.MISMATCH;
+	}
+
+	/**
+	 * Format a manifest line, without line break.
+	 */
+	static String formatLine(HashValue hash, Path relativePath) {
+		String path = relativePath.toString().replace(File.separatorChar, '/');
+		String hex = hash.toHex().toLowerCase(Locale.ROOT);
+
+		if (path.indexOf('\\') == -1 && path.indexOf('\n') == -1 && path.indexOf('\r') == -1) {
+			return hex + SEPARATOR + path;
+		}
+
+		String escaped = path.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+		return "\\" + hex + SEPARATOR + escaped;
+	}
+
+	/**
+	 * Parse a manifest line. Accepts the text mode separator of two spaces and the binary mode separator " *".
+	 */
+	static Entry parseLine(String line, int lineNumber) throws IOException {
+		boolean escaped = line.startsWith("\\");
+		String content = escaped ? line.substring(1) : line;
+		int space = content.indexOf(' ');
+
+		if (space <= 0 || space + 2 > content.length()
+				|| (content.charAt(space + 1) != ' ' && content.charAt(space + 1) != '*')) {
+			throw new IOException("Invalid manifest line " + lineNumber + ": " + line);
+		}
+
+		HashValue hash;
+
+		try {
+			hash = HashValue.fromHex(content.substring(0, space));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid hash in manifest line " + lineNumber + ": " + line, e);
+		}
+
+		String path = content.substring(space + 2);
+
+		if (escaped) {
+			path = unescape(path);
+		}
+
+		return new Entry(hash, path);
+	}
+
+	private static String unescape(String path) {
+		StringBuilder sb = new StringBuilder(path.length());
+
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+
+			if (c == '\\' && i + 1 < path.length()) {
+				char next = path.charAt(++i);
+
+				if (next == 'n') {
+					sb.append('\n');
+				} else if (next == 'r') {
+					sb.append('\r');
+				} else {
+					sb.append(next);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the lines for each batch and collects the paths of files that could not be hashed. Stops the hasher on
+	 * the first write error, as there is no point in hashing the remaining files.
+	 */
+	private static class ManifestSink implements HashSink {
+		private final Path root;
+		private final BufferedWriter out;
+		private final List<String> failed = Collections.synchronizedList(new ArrayList<>());
+		private volatile DirectoryHasher hasher;
+		private volatile IOException writeError;
+
+		ManifestSink(Path root, BufferedWriter out) {
+			this.root = root;
+			this.out = out;
+		}
+
+		@Override
+		public void accept(List<FileInfo> batch) {
+			if (writeError != null) {
+				throw new UncheckedIOException(writeError);
+			}
+
+			try {
+				for (FileInfo file : batch) {
+					out.write(formatLine(file.getHashValue(), root.relativize(file.getFilePath())));
+					out.newLine();
+				}
+			} catch (IOException e) {
+				writeError = e;
+				hasher.shutdown();
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void failed(FileInfo file) {
+			if (writeError == null) {
+				failed.add(root.relativize(file.getFilePath()).toString());
+			}
+		}
+	}
+
+	static class Entry {
+		final HashValue hash;
+		final String path;
+
+		Entry(HashValue hash, String path) {
+			this.hash = hash;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * Result of checking a single file.
+	 */
+	public enum Status {
+		/** The file matches the manifest. */
+		OK,
+		/** The file has a different hash. */
+		MISMATCH,
+		/** The file does not exist. */
+		MISSING,
+		/** The file could not be read. */
+		FAILED
+	}
+
+	/**
+	 * Result of {@link ChecksumManifest#verify(Path, Path, boolean)}. Only files that did not match are kept.
+	 */
+	public static class VerifyResult {
+		private final AtomicLong checked = new AtomicLong();
+		private final List<String> problems = new ArrayList<>();
+		private final List<Status> problemStatus = new ArrayList<>();
+		private volatile boolean stopped;
+
+		private void add(String path, Status status) {
+			checked.incrementAndGet();
+
+			if (status != Status.OK) {
+				synchronized (problems) {
+					problems.add(path);
+					problemStatus.add(status);
+				}
+			}
+		}
+
+		/**
+		 * Get the number of files that were checked.
+		 * 
+		 * @return number of checked files
+		 */
+		public long getChecked() {
+			return checked.get();
+		}
+
+		/**
+		 * Check if all checked files matched the manifest.
+		 * 
+		 * @return true if there were no problems
+		 */
+		public boolean isOk() {
+			synchronized (problems) {
+				return problems.isEmpty();
+			}
+		}
+
+		/**
+		 * Check if the verification stopped early because of a problem.
+		 * 
+		 * @return true if not all files were checked
+		 */
+		public boolean isStopped() {
+			return stopped;
+		}
+
+		/**
+		 * Get the paths, as written in the manifest, of all files with the given status. Does not work for
+		 * {@link Status#OK}, as matching files are not kept.
+		 * 
+		 * @param status
+		 *            to get the files for
+		 * @return the paths of the files
+		 */
+		public List<String> getFiles(Status status) {
+			List<String> files = new ArrayList<>();
+
+			synchronized (problems) {
+				for (int i = 0; i < problems.size(); i++) {
+					if (problemStatus.get(i) == status) {
+						files.add(problems.get(i));
+					}
+				}
+			}
+
+			return Collections.unmodifiableList(files);
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Index of the chunks of many files, created with a {@link ContentChunker}. Reports how much content files share, which
+ * finds near duplicates that whole file hashes miss, e.g. re-muxed videos or edited documents.
+ * <p>
+ * Chunks are stored as 64 bit keys in primitive arrays, and the number of times each chunk occurs is kept in an open
+ * addressing table, so millions of chunks only need a few dozen bytes each. The index can be saved to a file and
+ * loaded again. All methods are thread safe.
+ * </p>
+ */
+public class ChunkIndex {
+	private static final int MAGIC = 0x43494431; // CID1
+
+	private final Map<Path, ChunkList> files = new HashMap<>();
+	private final LongIntTable chunkCounts;
+
+	/**
+	 * Create an empty index.
+	 */
+	public ChunkIndex() {
+		this.chunkCounts = new LongIntTable();
+	}
+
+	private ChunkIndex(int expectedChunks) {
+		this.chunkCounts = new LongIntTable(expectedChunks);
+	}
+
+	private static Path normalize(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Split the file into chunks and add it to the index. The file is read outside of the lock, so several files can
+	 * be added in parallel with their own chunkers.
+	 * 
+	 * @param file
+	 *            to add
+	 * @param chunker
+	 *            to split the file with
+	 * @throws IOException
+	 *             if there is an error reading the file
+	 */
+	public void addFile(Path file, ContentChunker chunker) throws IOException {
+		add(file, chunker.chunkFile(file));
+	}
+
+	/**
+	 * Add the chunks of a file to the index, replacing earlier chunks of the same file.
+	 * 
+	 * @param file
+	 *            the chunks belong to
+	 * @param chunks
+	 *            of the file. Must not be modified afterwards
+	 */
+	public synchronized void add(Path file, ChunkList chunks) {
+		ChunkList old = files.put(normalize(file), chunks);
+
+		if (old != null) {
+			count(old, -1);
+		}
+
+		count(chunks, 1);
+	}
+
+	/**
+	 * Remove a file from the index.
+	 * 
+	 * @param file
+	 *            to remove
+	 * @return true if the file was in the index
+	 */
+	public synchronized boolean remove(Path file) {
+		ChunkList old = files.remove(normalize(file));
+
+		if (old == null) {
+			return false;
+		}
+
+		count(old, -1);
+		return true;
+	}
+
+	private void count(ChunkList chunks, int delta) {
+		for (int i = 0; i < chunks.size(); i++) {
+			chunkCounts.add(chunks.getKey(i), delta);
+		}
+	}
+
+	/**
+	 * Get the chunks of a file.
+	 * 
+	 * @param file
+	 *            to look up
+	 * @return the chunks of the file, or null if it is not in the index
+	 */
+	public synchronized ChunkList get(Path file) {
+		return files.get(normalize(file));
+	}
+
+	/**
+	 * Get the number of files in the index.
+	 * 
+	 * @return the number of files
+	 */
+	public synchronized int getFileCount() {
+		return files.size();
+	}
+
+	/**
+	 * Get the number of distinct chunks in the index.
+	 * 
+	 * @return the number of distinct chunks
+	 */
+	public synchronized int getChunkCount() {
+		return chunkCounts.size();
+	}
+
+	/**
+	 * Get the fraction of the first file's content that is also found in the second file.
+	 * 
+	 * @param file
+	 *            to check
+	 * @param other
+	 *            file to compare with
+	 * @return bytes of the file in chunks that also occur in the other file, divided by the file length. 0 for empty
+	 *         files
+	 * @throws IllegalArgumentException
+	 *             if one of the files is not in the index
+	 */
+	public synchronized double getSharedRatio(Path file, Path other) {
+		ChunkList chunks = getIndexed(file);
+		ChunkList otherChunks = getIndexed(other);
+		LongIntTable otherKeys = new LongIntTable(otherChunks.size());
+
+		for (int i = 0; i < otherChunks.size(); i++) {
+			otherKeys.add(otherChunks.getKey(i), 1);
+		}
+
+		long shared = 0;
+
+		for (int i = 0; i < chunks.size(); i++) {
+			if (otherKeys.get(chunks.getKey(i)) > 0) {
+				shared += chunks.getLength(i);
+			}
+		}
+
+		return ratio(shared, chunks.getTotalLength());
+	}
+
+	/**
+	 * Get the fraction of the file's content that is also found in any other file in the index.
+	 * 
+	 * @param file
+	 *            to check
+	 * @return bytes of the file in chunks that also occur in other files, divided by the file length. 0 for empty
+	 *         files
+	 * @throws IllegalArgumentException
+	 *             if the file is not in the index
+	 */
+	public synchronized double getSharedRatio(Path file) {
+		ChunkList chunks = getIndexed(file);
+		LongIntTable ownKeys = new LongIntTable(chunks.size());
+
+		for (int i = 0; i < chunks.size(); i++) {
+			ownKeys.add(chunks.getKey(i), 1);
+		}
+
+		long shared = 0;
+
+		for (int i = 0; i < chunks.size(); i++) {
+			long key = chunks.getKey(i);
+
+			if (chunkCounts.get(key) > ownKeys.get(key)) {
+				shared += chunks.getLength(i);
+			}
+		}
+
+		return ratio(shared, chunks.getTotalLength());
+	}
+
+	private ChunkList getIndexed(Path file) {
+		ChunkList chunks = files.get(normalize(file));
+
+		if (chunks == null) {
+			throw new IllegalArgumentException("File " + file + " is not in the index");
+		}
+
+		return chunks;
+	}
+
+	private static double ratio(long shared, long total) {
+		return total == 0 ? 0 : (double) shared / total;
+	}
+
+	/**
+	 * Save the index to a file. The file is written to a temporary file first and then moved into place.
+	 * 
+	 * @param indexFile
+	 *            to save to
+	 * @throws IOException
+	 *             if there is an error writing the file
+	 */
+	public synchronized void save(Path indexFile) throws IOException {
+		Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(files.size());
+			out.writeInt(chunkCounts.size());
+
+			for (Entry<Path, ChunkList> entry : files.entrySet()) {
+				ChunkList chunks = entry.getValue();
+				out.writeUTF(entry.getKey().toString());
+				out.writeInt(chunks.size());
+
+				for (int i = 0; i < chunks.size(); i++) {
+					out.writeLong(chunks.getKey(i));
+					out.writeInt(chunks.getLength(i));
+				}
+			}
+		}
+
+		Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load an index that was saved with {@link #save(Path)}.
+	 * 
+	 * @param indexFile
+	 *            to load
+	 * @return the loaded index
+	 * @throws IOException
+	 *             if there is an error reading the file or it is not a chunk index
+	 */
+	public static ChunkIndex load(Path indexFile) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(indexFile + " is not a chunk index");
+			}
+
+			int fileCount = in.readInt();
+			ChunkIndex index = new ChunkIndex(in.readInt());
+
+			for (int f = 0; f < fileCount; f++) {
+				Path file = Paths.get(in.readUTF());
+				int chunkCount = in.readInt();
+				ChunkList chunks = new ChunkList(chunkCount);
+
+				for (int i = 0; i < chunkCount; i++) {
+					long key = in.readLong();
+					chunks.add(key, in.readInt());
+				}
+
+				index.add(file, chunks);
+			}
+
+			return index;
+		}
+	}
+}
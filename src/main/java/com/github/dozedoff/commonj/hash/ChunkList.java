@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.Arrays;
+
+/**
+ * The chunks of a file, as found by a {@link ContentChunker}. Each chunk is stored as a 64 bit key, taken from the
+ * start of the chunk hash, and its length. The values are kept in primitive arrays, so large files do not create an
+ * object per chunk.
+ */
+public final class ChunkList implements ContentChunker.ChunkHandler {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys;
+	private int[] lengths;
+	private int size;
+	private long totalLength;
+
+	/**
+	 * Create an empty list.
+	 */
+	public ChunkList() {
+		this(INITIAL_CAPACITY);
+	}
+
+	ChunkList(int capacity) {
+		keys = new long[Math.max(1, capacity)];
+		lengths = new int[keys.length];
+	}
+
+	/**
+	 * Add the chunk to the end of the list.
+	 * 
+	 * @param offset
+	 *            {@inheritDoc}
+	 * @param length
+	 *            {@inheritDoc}
+	 * @param hash
+	 *            {@inheritDoc}
+	 */
+	@Override
+	public void chunk(long offset, int length, HashValue hash) {
+		add(hash.prefix(), length);
+	}
+
+	/**
+	 * Add a chunk to the end of the list.
+	 * 
+	 * @param key
+	 *            of the chunk
+	 * @param length
+	 *            of the chunk in bytes
+	 */
+	public void add(long key, int length) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			lengths = Arrays.copyOf(lengths, size * 2);
+		}
+
+		keys[size] = key;
+		lengths[size] = length;
+		size++;
+		totalLength += length;
+	}
+
+	/**
+	 * Get the number of chunks.
+	 * 
+	 * @return the number of chunks
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the key of a chunk.
+	 * 
+	 * @param index
+	 *            of the chunk
+	 * @return the key of the chunk
+	 */
+	public long getKey(int index) {
+		checkIndex(index);
+		return keys[index];
+	}
+
+	/**
+	 * Get the length of a chunk.
+	 * 
+	 * @param index
+	 *            of the chunk
+	 * @return the length of the chunk in bytes
+	 */
+	public int getLength(int index) {
+		checkIndex(index);
+		return lengths[index];
+	}
+
+	/**
+	 * Get the combined length of all chunks.
+	 * 
+	 * @return the length in bytes
+	 */
+	public long getTotalLength() {
+		return totalLength;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+		}
+	}
+}
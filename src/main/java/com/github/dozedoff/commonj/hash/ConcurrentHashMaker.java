@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Thread safe counterpart to {@link HashMaker}. Each calling thread gets its own {@link HashMaker}, with a digest
+ * cloned from a prototype, so a single instance can be shared between worker threads.
+ */
+public class ConcurrentHashMaker {
+	private final HashMaker prototype;
+	private final ThreadLocal<HashMaker> hashMakers;
+	private volatile long mappedThreshold = HashMaker.DEFAULT_MAPPED_THRESHOLD;
+
+	/**
+	 * Create a new {@link ConcurrentHashMaker} with the default (SHA-256) algorithm.
+	 */
+	public ConcurrentHashMaker() {
+		this(new HashMaker());
+	}
+
+	/**
+	 * Create a new {@link ConcurrentHashMaker} with the specified algorithm.
+	 * 
+	 * @param algorithm
+	 *            to use for hashing
+	 */
+	public ConcurrentHashMaker(String algorithm) {
+		this(new HashMaker(algorithm));
+	}
+
+	/**
+	 * Create a new {@link ConcurrentHashMaker} with the specified algorithm and read buffer size.
+	 * 
+	 * @param algorithm
+	 *            to use for hashing
+	 * @param bufferSize
+	 *            size of the read buffer in bytes for each thread, must be greater than 0
+	 */
+	public ConcurrentHashMaker(String algorithm, int bufferSize) {
+		this(new HashMaker(algorithm, bufferSize));
+	}
+
+	private ConcurrentHashMaker(HashMaker prototype) {
+		this.prototype = prototype;
+		this.hashMakers = ThreadLocal.withInitial(this::createHashMaker);
+	}
+
+	private HashMaker createHashMaker() {
+		synchronized (prototype) {
+			return new HashMaker(prototype.copyDigest(), prototype.getBufferSize());
+		}
+	}
+
+	/**
+	 * Get the {@link HashMaker} for the calling thread. The returned instance must not be passed to other threads.
+	 * 
+	 * @return the {@link HashMaker} of the current thread
+	 */
+	HashMaker get() {
+		HashMaker hashMaker = hashMakers.get();
+		hashMaker.setMappedThreshold(mappedThreshold);
+		return hashMaker;
+	}
+
+	/**
+	 * Set the file size from which on files are hashed through memory mapped windows. See
+	 * {@link HashMaker#setMappedThreshold(long)}.
+	 * 
+	 * @param mappedThreshold
+	 *            file size in bytes, must not be negative
+	 */
+	public void setMappedThreshold(long mappedThreshold) {
+		if (mappedThreshold < 0) {
+			throw new IllegalArgumentException("Mapped threshold cannot be negative");
+		}
+
+		this.mappedThreshold = mappedThreshold;
+	}
+
+	/**
+	 * Calculate the hash for the provided binary data, represented as a hex string. See {@link HashMaker#hash(byte[])}.
+	 * 
+	 * @param data
+	 *            Binary data
+	 * @return hash Hash as a hex value
+	 */
+	public String hash(byte[] data) {
+		return get().hash(data);
+	}
+
+	/**
+	 * Calculate the hash for the provided binary data. See {@link HashMaker#digest(byte[])}.
+	 * 
+	 * @param data
+	 *            Binary data
+	 * @return the hash, or null if there is no data
+	 */
+	public HashValue digest(byte[] data) {
+		return get().digest(data);
+	}
+
+	/**
+	 * Calculate the hash for the provided path, represented as a hex string. See {@link HashMaker#hashFile(Path)}.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @return the hash of the file or null if there was an error
+	 */
+	public String hashFile(Path file) {
+		return get().hashFile(file);
+	}
+
+	/**
+	 * Calculate the hash for the provided path. See {@link HashMaker#digestFile(Path)}.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @return the hash of the file or null if there was an error
+	 */
+	public HashValue digestFile(Path file) {
+		return get().digestFile(file);
+	}
+
+	/**
+	 * Calculate the hash for the provided path, continuing from a previous state if the file has only been appended
+	 * to. See {@link HashMaker#digestFile(Path, DigestState)}.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @param previous
+	 *            state returned by an earlier call for the same file, or null
+	 * @return the state containing the hash of the file, or null if there was an error
+	 */
+	public DigestState digestFile(Path file, DigestState previous) {
+		return get().digestFile(file, previous);
+	}
+
+	/**
+	 * Calculate the hash for the data read from the stream, represented as a hex string. See
+	 * {@link HashMaker#hashStream(InputStream)}.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return the hash of the data read from the stream
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public String hashStream(InputStream stream) throws IOException {
+		return get().hashStream(stream);
+	}
+
+	/**
+	 * Calculate the hash for the data read from the stream. See {@link HashMaker#digestStream(InputStream)}.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return the hash of the data read from the stream
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public HashValue digestStream(InputStream stream) throws IOException {
+		return get().digestStream(stream);
+	}
+
+	/**
+	 * Calculate the hash for the data read from the channel, represented as a hex string. See
+	 * {@link HashMaker#hashChannel(ReadableByteChannel)}.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return the hash of the data read from the channel
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public String hashChannel(ReadableByteChannel channel) throws IOException {
+		return get().hashChannel(channel);
+	}
+
+	/**
+	 * Calculate the hash for the data read from the channel. See {@link HashMaker#digestChannel(ReadableByteChannel)}.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return the hash of the data read from the channel
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public HashValue digestChannel(ReadableByteChannel channel) throws IOException {
+		return get().digestChannel(channel);
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Splits data into chunks at positions that depend on the content, using a Gear rolling hash. An insertion or
+ * deletion only changes the chunks around it, the following chunks keep their boundaries and hashes. This allows
+ * finding files that share most of their content, even if they are not identical.
+ * <p>
+ * Boundaries and chunk hashes are calculated in a single pass over the data. A boundary is placed where the top bits
+ * of the rolling hash are zero, which gives chunks of about the average size, limited to the minimum and maximum size.
+ * Instances are not thread safe.
+ * </p>
+ */
+public class ContentChunker {
+	/**
+	 * Default minimum chunk size in bytes.
+	 */
+	public static final int DEFAULT_MIN_SIZE = 2 * 1024;
+
+	/**
+	 * Default average chunk size in bytes.
+	 */
+	public static final int DEFAULT_AVERAGE_SIZE = 8 * 1024;
+
+	/**
+	 * Default maximum chunk size in bytes.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+	/**
+	 * Random values for each byte. Fixed seed, so boundaries are the same across runs.
+	 */
+	private static final long[] GEAR = new long[256];
+
+	static {
+		Random random = new Random(0x4745415231L);
+
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private final int minSize;
+	private final int maxSize;
+	private final long mask;
+	private final MessageDigest digest;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Receives the chunks found by a {@link ContentChunker}, in order.
+	 */
+	@FunctionalInterface
+	public interface ChunkHandler {
+		/**
+		 * Handle a chunk.
+		 * 
+		 * @param offset
+		 *            of the chunk in the data
+		 * @param length
+		 *            of the chunk in bytes
+		 * @param hash
+		 *            of the chunk data
+		 */
+		void chunk(long offset, int length, HashValue hash);
+	}
+
+	/**
+	 * Create a new {@link ContentChunker} using {@link Digests#XXH64} for chunk hashes and the default sizes.
+	 */
+	public ContentChunker() {
+		this(Digests.XXH64, DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create a new {@link ContentChunker}.
+	 * 
+	 * @param algorithm
+	 *            to hash the chunks with, see {@link Digests}
+	 * @param minSize
+	 *            minimum chunk size in bytes, must be greater than 0
+	 * @param averageSize
+	 *            average chunk size in bytes, must be a power of two between the minimum and maximum size
+	 * @param maxSize
+	 *            maximum chunk size in bytes
+	 * @throws IllegalArgumentException
+	 *             if the algorithm is unknown or the sizes are invalid
+	 */
+	public ContentChunker(String algorithm, int minSize, int averageSize, int maxSize) {
+		if (minSize <= 0 || averageSize < minSize || maxSize < averageSize) {
+			throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min <= average <= max");
+		}
+
+		if (Integer.bitCount(averageSize) != 1) {
+			throw new IllegalArgumentException("Average chunk size must be a power of two");
+		}
+
+		try {
+			this.digest = Digests.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unknown algorithm " + algorithm, e);
+		}
+
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		// the top bits depend on the last 64 bytes, the low bits only on the last few
+		this.mask = -1L << (Long.SIZE - Integer.numberOfTrailingZeros(averageSize));
+		// heap buffer, the rolling hash reads the backing array directly
+		this.buffer = ByteBuffer.allocate(HashMaker.DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Split a file into chunks.
+	 * 
+	 * @param file
+	 *            to split
+	 * @return the chunks of the file
+	 * @throws IOException
+	 *             if there is an error reading the file
+	 */
+	public ChunkList chunkFile(Path file) throws IOException {
+		ChunkList chunks = new ChunkList();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			chunk(channel, chunks);
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * Split the data read from the channel into chunks. The channel is read until the end, but not closed.
+	 * 
+	 * @param channel
+	 *            to read
+	 * @param handler
+	 *            to pass the chunks to
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public void chunk(ReadableByteChannel channel, ChunkHandler handler) throws IOException {
+		byte[] data = buffer.array();
+		long offset = 0;
+		int length = 0;
+		long hash = 0;
+
+		try {
+			while (channel.read(buffer) != -1) {
+				int end = buffer.position();
+				int start = 0;
+
+				for (int i = 0; i < end; i++) {
+					hash = (hash << 1) + GEAR[data[i] & 0xFF];
+					length++;
+
+					if ((length >= minSize && (hash & mask) == 0) || length >= maxSize) {
+						digest.update(data, start, i + 1 - start);
+						handler.chunk(offset, length, HashValue.wrap(digest.digest()));
+
+						offset += length;
+						length = 0;
+						hash = 0;
+						start = i + 1;
+					}
+				}
+
+				digest.update(data, start, end - start);
+				buffer.clear();
+			}
+		} catch (IOException | RuntimeException e) {
+			digest.reset();
+			throw e;
+		} finally {
+			buffer.clear();
+		}
+
+		if (length > 0) {
+			handler.chunk(offset, length, HashValue.wrap(digest.digest()));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * The state of a digest after hashing a file up to a given length, created by
+ * {@link HashMaker#digestFile(java.nio.file.Path, DigestState)}. If the file has only grown since, the hash can be
+ * extended by reading the appended data instead of the whole file.
+ * <p>
+ * The state is tied to the file key and length of the file, and keeps the last bytes before that length to detect
+ * files that were rewritten instead of appended to. Changes further back in the file are not detected, so this is
+ * only meant for append-only files such as logs. States are kept in memory and should be stored per path by the
+ * caller.
+ * </p>
+ */
+public final class DigestState {
+	/**
+	 * Number of bytes at the end of the hashed data that are compared before the hash is extended.
+	 */
+	public static final int TAIL_SIZE = 4096;
+
+	private final String algorithm;
+	private final Object fileKey;
+	private final long length;
+	private final byte[] tail;
+	private final MessageDigest digest;
+	private final HashValue hash;
+
+	DigestState(String algorithm, Object fileKey, long length, byte[] tail, MessageDigest digest, HashValue hash) {
+		this.algorithm = algorithm;
+		this.fileKey = fileKey;
+		this.length = length;
+		this.tail = tail;
+		this.digest = digest;
+		this.hash = hash;
+	}
+
+	/**
+	 * Get the hash of the file up to {@link #getLength()}.
+	 * 
+	 * @return the hash of the file
+	 */
+	public HashValue getHash() {
+		return hash;
+	}
+
+	/**
+	 * Get the number of bytes that were hashed.
+	 * 
+	 * @return the hashed length of the file
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Get the algorithm used for the hash.
+	 * 
+	 * @return the name of the algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Check if the hash can be extended. This is not the case for digests that cannot be cloned, in which case the
+	 * whole file is read again.
+	 * 
+	 * @return true if the digest state was saved
+	 */
+	public boolean isResumable() {
+		return digest != null;
+	}
+
+	Object getFileKey() {
+		return fileKey;
+	}
+
+	boolean tailMatches(byte[] other) {
+		return Arrays.equals(tail, other);
+	}
+
+	/**
+	 * Get a copy of the saved digest, so that the state can be resumed more than once.
+	 */
+	MessageDigest copyDigest() throws CloneNotSupportedException {
+		return (MessageDigest) digest.clone();
+	}
+}
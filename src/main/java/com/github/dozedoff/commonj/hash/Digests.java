@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Factory for {@link MessageDigest} instances. In addition to the algorithms of the installed security providers,
+ * checksums and fast non-cryptographic hashes are available as digests, so they can be used wherever a digest is
+ * expected. The non-cryptographic hashes are meant for finding candidates, e.g. probable duplicates, not for verifying
+ * integrity against tampering.
+ */
+public final class Digests {
+	/**
+	 * CRC-32 as used by zip, 4 bytes, big endian.
+	 */
+	public static final String CRC32 = "CRC32";
+	/**
+	 * CRC-32C (Castagnoli), 4 bytes, big endian.
+	 */
+	public static final String CRC32C = "CRC32C";
+	/**
+	 * Adler-32, 4 bytes, big endian.
+	 */
+	public static final String ADLER32 = "ADLER32";
+	/**
+	 * 64 bit xxHash (XXH64) with seed 0, 8 bytes, big endian.
+	 */
+	public static final String XXH64 = "XXH64";
+	/**
+	 * 128 bit MurmurHash3 (x64 variant) with seed 0, 16 bytes.
+	 */
+	public static final String MURMUR3_128 = "MURMUR3-128";
+
+	private Digests() {
+	}
+
+	/**
+	 * Create a new digest for the given algorithm. Checksum names are matched case insensitive, all other names are
+	 * passed to {@link MessageDigest#getInstance(String)}.
+	 * 
+	 * @param algorithm
+	 *            name of the algorithm
+	 * @return a new digest instance
+	 * @throws NoSuchAlgorithmException
+	 *             if the algorithm is not known
+	 */
+	public static MessageDigest getInstance(String algorithm) throws NoSuchAlgorithmException {
+		if (algorithm == null) {
+			throw new NoSuchAlgorithmException("Algorithm cannot be null");
+		}
+
+		if (CRC32.equalsIgnoreCase(algorithm)) {
+			return new ChecksumDigest(CRC32, CRC32::new);
+		} else if (CRC32C.equalsIgnoreCase(algorithm)) {
+			return new HashFunctionDigest(CRC32C, Hashing.crc32c());
+		} else if (ADLER32.equalsIgnoreCase(algorithm)) {
+			return new ChecksumDigest(ADLER32, Adler32::new);
+		} else if (XXH64.equalsIgnoreCase(algorithm)) {
+			return new XxHash64Digest(XXH64);
+		} else if (MURMUR3_128.equalsIgnoreCase(algorithm)) {
+			return new HashFunctionDigest(MURMUR3_128, Hashing.murmur3_128());
+		}
+
+		return MessageDigest.getInstance(algorithm);
+	}
+}
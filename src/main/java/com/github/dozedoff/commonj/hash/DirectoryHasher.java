@@ -9,41 +9,238 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.dozedoff.commonj.file.FileInfo;
+import com.github.dozedoff.commonj.file.ParallelFileWalker;
 
 /**
- * Class for hashing files in a directory.
+ * Class for hashing files in a directory. The directory is walked on the calling thread, files are hashed by a pool of
+ * worker threads. Workers block while there is no work. Results are passed to a {@link HashSink} in batches, a batch
+ * is delivered when it is full or when the workers have run out of work. If listing directories is the bottleneck,
+ * e.g. on network filesystems, the walk can be spread over several threads with {@link #setWalkParallelism(int)}.
+ * <p>
+ * Hashing and reading are limited separately: the number of worker threads sets how many files can be processed at
+ * once, the I/O parallelism sets how many of them may read from disk at the same time. Files answered by the
+ * {@link HashCache} do not need to read, so they are not limited by the I/O parallelism. For spinning disks a low I/O
+ * parallelism avoids seeking, for SSDs it can be set to the number of workers.
+ * </p>
+ * <p>
+ * Even then, reading files in walk order causes a lot of seeking on spinning disks, as the walk order has little to
+ * do with where the files are on disk. {@link #setReadOrder(ToLongFunction, int)} collects found files in a window
+ * and queues them sorted by a key such as {@link #INODE_ORDER}, which turns random reads into mostly sequential ones.
+ * This works best with an I/O parallelism of 1.
+ * </p>
+ * <p>
+ * To run next to other services, reading can be limited with the {@link Throttle} returned by {@link #getThrottle()}.
+ * Limits can be changed while files are hashed.
+ * </p>
+ * <p>
+ * Instead of running full scans again, {@link #watchDirectory(String, long, TimeUnit)} keeps watching a directory after
+ * the initial pass and only hashes files that were created or modified.
+ * </p>
  */
 public class DirectoryHasher {
-	private LinkedBlockingQueue<FileInfo> outputQueue;
+	/**
+	 * Default number of files that can wait for a worker before the walk blocks.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+	/**
+	 * Default number of files that are collected and sorted before they are queued, if a read order is set.
+	 */
+	public static final int DEFAULT_READ_WINDOW = 10000;
+
+	/**
+	 * Orders files by their inode number, taken from {@link BasicFileAttributes#fileKey()}. On most filesystems files
+	 * with close inode numbers are also close on disk. Files without an inode number are queued after all others in
+	 * walk order.
+	 */
+	public static final ToLongFunction<BasicFileAttributes> INODE_ORDER = attrs -> inode(attrs.fileKey());
+
+	private static final Pattern INODE_PATTERN = Pattern.compile("ino=(\\d+)");
+
+	private final HashSink sink;
+	private final int batchSize;
+	private final Object batchLock = new Object();
+	private final Object deliveryLock = new Object();
+	private List<WorkItem> batch;
 	private final static Logger logger = LoggerFactory.getLogger(DirectoryHasher.class);
-	private HashWorker hashWorker;
+	private final LinkedBlockingQueue<WorkItem> inputQueue;
+	private final List<HashWorker> hashWorkers;
+	private final Semaphore ioPermits;
+	private final ConcurrentHashMaker hashMaker;
 	private FilenameFilter filter;
+	private final String algorithm;
+	private volatile HashCache hashCache;
+	private final Throttle throttle = new Throttle();
+	private int walkParallelism = 1;
+	private ToLongFunction<BasicFileAttributes> readOrder;
+	private int readWindow = DEFAULT_READ_WINDOW;
+	private volatile boolean shutdown;
 
 	/**
-	 * Create a new {@link DirectoryHasher} with the given queue to store results. A worker thread is created and
-	 * started.
+	 * Create a new {@link DirectoryHasher} with the given queue to store results. One worker thread per available
+	 * processor is created and started.
 	 * 
 	 * @param outputQueue
 	 *            to store results for processed files
 	 */
 	public DirectoryHasher(LinkedBlockingQueue<FileInfo> outputQueue) {
+		this(outputQueue, HashMaker.DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Create a new {@link DirectoryHasher} with the given queue to store results, using the given hash algorithm. A
+	 * fast non-cryptographic algorithm like {@link Digests#XXH64} can be used for a cheap first pass, e.g. to find
+	 * duplicate candidates. One worker thread per available processor is created and started.
+	 * 
+	 * @param outputQueue
+	 *            to store results for processed files
+	 * @param algorithm
+	 *            to use for hashing, see {@link Digests}
+	 */
+	public DirectoryHasher(LinkedBlockingQueue<FileInfo> outputQueue, String algorithm) {
+		this(outputQueue, algorithm, Runtime.getRuntime().availableProcessors(),
+				Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Create a new {@link DirectoryHasher} with the given queue to store results, using the given hash algorithm and
+	 * parallelism. The worker threads are created and started.
+	 * 
+	 * @param outputQueue
+	 *            to store results for processed files
+	 * @param algorithm
+	 *            to use for hashing, see {@link Digests}
+	 * @param hashThreads
+	 *            number of worker threads hashing files, must be greater than 0
+	 * @param ioParallelism
+	 *            number of files that may be read at the same time, must be greater than 0
+	 * @param queueCapacity
+	 *            number of files that can wait for a worker before the walk blocks, must be greater than 0
+	 */
+	public DirectoryHasher(LinkedBlockingQueue<FileInfo> outputQueue, String algorithm, int hashThreads,
+			int ioParallelism, int queueCapacity) {
+		this(outputQueue::addAll, 1, algorithm, hashThreads, ioParallelism, queueCapacity);
+	}
+
+	/**
+	 * Create a new {@link DirectoryHasher} that passes results to the given sink, using the given hash algorithm and
+	 * parallelism. The worker threads are created and started.
+	 * 
+	 * @param sink
+	 *            to pass results for processed files to
+	 * @param batchSize
+	 *            maximum number of results per batch, must be greater than 0
+	 * @param algorithm
+	 *            to use for hashing, see {@link Digests}
+	 * @param hashThreads
+	 *            number of worker threads hashing files, must be greater than 0
+	 * @param ioParallelism
+	 *            number of files that may be read at the same time, must be greater than 0
+	 * @param queueCapacity
+	 *            number of files that can wait for a worker before the walk blocks, must be greater than 0
+	 */
+	public DirectoryHasher(HashSink sink, int batchSize, String algorithm, int hashThreads, int ioParallelism,
+			int queueCapacity) {
+		if (hashThreads <= 0 || ioParallelism <= 0 || queueCapacity <= 0 || batchSize <= 0) {
+			throw new IllegalArgumentException(
+					"Thread count, I/O parallelism, queue capacity and batch size must be greater than 0");
+		}
+
 		this.filter = new AcceptAllFilter();
-		this.outputQueue = outputQueue;
-		hashWorker = new HashWorker();
-		hashWorker.setDaemon(true);
-		hashWorker.start();
+		this.sink = sink;
+		this.batchSize = batchSize;
+		this.batch = new ArrayList<>(batchSize);
+		this.algorithm = algorithm;
+		this.hashMaker = new ConcurrentHashMaker(algorithm);
+		this.inputQueue = new LinkedBlockingQueue<>(queueCapacity);
+		this.ioPermits = new Semaphore(ioParallelism);
+
+		List<HashWorker> workers = new ArrayList<>(hashThreads);
+
+		for (int i = 0; i < hashThreads; i++) {
+			HashWorker hashWorker = new HashWorker();
+			hashWorker.setName("Hash worker " + i);
+			hashWorker.setDaemon(true);
+			hashWorker.start();
+			workers.add(hashWorker);
+		}
+
+		this.hashWorkers = Collections.unmodifiableList(workers);
+	}
+
+	/**
+	 * Stop all worker threads. Files that are still queued or waiting for delivery are not hashed and count as failed,
+	 * so the jobs they belong to still complete. Files found by a walk after shutdown fail immediately.
+	 */
+	public void shutdown() {
+		shutdown = true;
+
+		for (HashWorker hashWorker : hashWorkers) {
+			hashWorker.interrupt();
+		}
+
+		failQueued();
+	}
+
+	/**
+	 * Remove all queued and undelivered files and mark them as failed.
+	 */
+	private void failQueued() {
+		List<WorkItem> dropped = new ArrayList<>();
+		inputQueue.drainTo(dropped);
+
+		synchronized (batchLock) {
+			dropped.addAll(batch);
+			batch = new ArrayList<>(batchSize);
+		}
+
+		for (WorkItem item : dropped) {
+			fail(item);
+		}
+	}
+
+	/**
+	 * Pass the file to the sink as failed, then count it as failed for its job.
+	 */
+	private void fail(WorkItem item) {
+		try {
+			sink.failed(item.fileInfo);
+		} catch (RuntimeException e) {
+			logger.warn("Failed to report {} as failed: {}", item.fileInfo.getFilePath(), e.toString());
+		}
+
+		item.job.fileFailed();
+	}
+
+	/**
+	 * Get the worker threads of this hasher.
+	 * 
+	 * @return an unmodifiable list of the workers
+	 */
+	List<HashWorker> getHashWorkers() {
+		return hashWorkers;
 	}
 
 	/**
@@ -57,14 +254,105 @@ public class DirectoryHasher {
 	}
 
 	/**
-	 * Walk the directory and hash all files matching the set filter.
+	 * Set the number of threads used to walk directories. With a value of 1 the directory is walked on the calling
+	 * thread only. With higher values, subdirectories are listed in parallel and files are queued for hashing as soon
+	 * as they are found. The filter must be thread safe if this is greater than 1.
+	 * 
+	 * @param walkParallelism
+	 *            number of threads for the walk, must be greater than 0
+	 */
+	public void setWalkParallelism(int walkParallelism) {
+		if (walkParallelism <= 0) {
+			throw new IllegalArgumentException("Walk parallelism must be greater than 0");
+		}
+
+		this.walkParallelism = walkParallelism;
+	}
+
+	/**
+	 * Set the order in which found files are read. Files are collected until the window is full or the walk is
+	 * finished, then queued sorted by the given key. A larger window gives a better order, but hashing starts later
+	 * and more files are held in memory.
+	 * 
+	 * @param readOrder
+	 *            key to sort files by, e.g. {@link #INODE_ORDER}, or null to read files in walk order
+	 * @param window
+	 *            number of files to collect before sorting, must be greater than 0
+	 */
+	public void setReadOrder(ToLongFunction<BasicFileAttributes> readOrder, int window) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("Read window must be greater than 0");
+		}
+
+		this.readOrder = readOrder;
+		this.readWindow = window;
+	}
+
+	/**
+	 * Get the inode number from a file key.
+	 * 
+	 * @param fileKey
+	 *            as returned by {@link BasicFileAttributes#fileKey()}
+	 * @return the inode number, or {@link Long#MAX_VALUE} if the key has none
+	 */
+	static long inode(Object fileKey) {
+		if (fileKey == null) {
+			return Long.MAX_VALUE;
+		}
+
+		Matcher matcher = INODE_PATTERN.matcher(fileKey.toString());
+
+		if (!matcher.find()) {
+			return Long.MAX_VALUE;
+		}
+
+		try {
+			return Long.parseLong(matcher.group(1));
+		} catch (NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Get the throttle that limits reading. There are no limits by default.
+	 * 
+	 * @return the throttle used by the workers
+	 */
+	public Throttle getThrottle() {
+		return throttle;
+	}
+
+	/**
+	 * Set the cache to consult before reading files. Files whose size, modification time and file key match the cached
+	 * entry are not read again, newly calculated hashes are added to the cache.
+	 * 
+	 * @param hashCache
+	 *            to use, or null to disable caching
+	 * @throws IllegalArgumentException
+	 *             if the cache was created for a different algorithm
+	 */
+	public void setHashCache(HashCache hashCache) {
+		if (hashCache != null && !algorithm.equalsIgnoreCase(hashCache.getAlgorithm())) {
+			throw new IllegalArgumentException(
+					"Cache is for " + hashCache.getAlgorithm() + ", but the hasher uses " + algorithm);
+		}
+
+		this.hashCache = hashCache;
+	}
+
+	/**
+	 * Walk the directory and hash all files matching the set filter. This method returns once the walk is complete,
+	 * hashing continues in the background after this method returns. Use the returned {@link HashJob} to wait for the
+	 * results and to follow the progress.
 	 * 
 	 * @param directory
 	 *            to recursively hash
+	 * @return a handle for the hashing of this directory
 	 * @throws IOException
-	 *             if there is an error accessing the filesystem
+	 *             if there is an error accessing the filesystem, or the walk was interrupted while waiting for space
+	 *             in the work queue
 	 */
-	public void hashDirectory(String directory) throws IOException {
+	public HashJob hashDirectory(String directory) throws IOException {
 		File dir = new File(directory);
 
 		// check if the directory exists
@@ -72,8 +360,103 @@ public class DirectoryHasher {
 			throw new FileNotFoundException("Directory " + dir + " does not exist");
 		}
 
+		HashJob job = new HashJob();
+
 		logger.info("Starting to walk {}", dir);
-		java.nio.file.Files.walkFileTree(dir.toPath(), new DirectoryVisitor(filter));
+
+		ReorderWindow window = readOrder == null ? null : new ReorderWindow(readOrder, readWindow);
+		DirectoryVisitor visitor = new DirectoryVisitor(filter, job, window);
+
+		try {
+			if (walkParallelism > 1) {
+				new ParallelFileWalker(walkParallelism).walk(dir.toPath(), visitor::visitFile);
+			} else {
+				java.nio.file.Files.walkFileTree(dir.toPath(), visitor);
+			}
+
+			if (window != null) {
+				window.flush();
+			}
+		} catch (IOException | RuntimeException e) {
+			job.walkFailed(e);
+			throw e;
+		}
+
+		job.walkFinished();
+		return job;
+	}
+
+	/**
+	 * Hash the directory like {@link #hashDirectory(String)}, then keep watching it and hash files again when they are
+	 * created or modified. Events for a file are collected until none has arrived for the debounce time, so bursts of
+	 * writes result in a single hash. Close the returned watch to stop watching.
+	 * 
+	 * @param directory
+	 *            to recursively hash and watch
+	 * @param debounce
+	 *            time without events before a changed file is hashed
+	 * @param unit
+	 *            of the debounce time
+	 * @return a handle for the watch
+	 * @throws IOException
+	 *             if there is an error accessing the filesystem or registering the watch
+	 */
+	public DirectoryWatch watchDirectory(String directory, long debounce, TimeUnit unit) throws IOException {
+		File dir = new File(directory);
+
+		if (!dir.exists()) {
+			throw new FileNotFoundException("Directory " + dir + " does not exist");
+		}
+
+		// register before the walk so that changes during the initial pass are not missed
+		DirectoryWatch watch = new DirectoryWatch(this, dir.toPath(), unit.toNanos(debounce));
+
+		try {
+			watch.start(hashDirectory(directory));
+		} catch (IOException | RuntimeException e) {
+			watch.close();
+			throw e;
+		}
+
+		return watch;
+	}
+
+	/**
+	 * Queue a single file for hashing if it matches the filter.
+	 * 
+	 * @param file
+	 *            to hash
+	 * @param attrs
+	 *            of the file
+	 * @param job
+	 *            the file belongs to
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting for space in the queue
+	 */
+	void queueFile(Path file, BasicFileAttributes attrs, HashJob job) throws InterruptedIOException {
+		WorkItem item = createWorkItem(file, attrs, filter, job);
+
+		if (item != null) {
+			addFile(item);
+		}
+	}
+
+	/**
+	 * Create a work item for the file, if it matches the filter.
+	 * 
+	 * @return the work item, or null if the file does not match
+	 */
+	private static WorkItem createWorkItem(Path file, BasicFileAttributes attrs, FilenameFilter filter, HashJob job) {
+		Path dir = file.getParent();
+		Path filename = file.getFileName();
+
+		if (dir == null || filename == null || !filter.accept(dir.toFile(), filename.toString())) {
+			return null;
+		}
+
+		FileInfo fi = new FileInfo(file.toFile(), null);
+		fi.setSize(attrs.size());
+		return new WorkItem(fi, attrs, job);
 	}
 
 	/**
@@ -100,15 +483,23 @@ public class DirectoryHasher {
 
 	class DirectoryVisitor extends SimpleFileVisitor<Path> {
 		private FilenameFilter filter;
+		private HashJob job;
+		private ReorderWindow window;
 
 		/**
 		 * Create a new directory visitor with the given filter.
 		 * 
 		 * @param filter
 		 *            to use for filtering files
+		 * @param job
+		 *            the files belong to
+		 * @param window
+		 *            to sort files before queuing them, or null to queue them in walk order
 		 */
-		public DirectoryVisitor(FilenameFilter filter) {
+		public DirectoryVisitor(FilenameFilter filter, HashJob job, ReorderWindow window) {
 			this.filter = filter;
+			this.job = job;
+			this.window = window;
 		}
 
 		/**
@@ -124,63 +515,269 @@ public class DirectoryHasher {
 			if (file == null) {
 				return FileVisitResult.CONTINUE;
 			}
-			
-			Path dir = file.getParent();
-			
-			if(dir == null) {
-				return FileVisitResult.CONTINUE;
-			}
-			
-			Path filename = file.getFileName();
 
-			if (filename == null) {
-				return FileVisitResult.CONTINUE;
-			}
-					
+			WorkItem item = createWorkItem(file, attrs, filter, job);
 
-			if (filter.accept(dir.toFile(), filename.toString())) {
-					FileInfo fi = new FileInfo(file.toFile(), null);
-					hashWorker.addFile(fi);
+			if (item != null) {
+				if (window == null) {
+					addFile(item);
+				} else {
+					window.add(item);
 				}
+			}
+
 			return super.visitFile(file, attrs);
 		}
 	}
 
 	/**
-	 * This Tread hashes files and adds them to a queue.
+	 * A file waiting to be hashed, with the attributes read during the walk.
 	 */
-	class HashWorker extends Thread {
-		private LinkedBlockingQueue<FileInfo> inputQueue = new LinkedBlockingQueue<>();
-		private LinkedList<FileInfo> workingList = new LinkedList<>();
-		private HashMaker hash = new HashMaker();
+	static class WorkItem {
+		private final FileInfo fileInfo;
+		private final BasicFileAttributes attributes;
+		private final HashJob job;
+		private long orderKey;
+		private long bytesRead;
+
+		WorkItem(FileInfo fileInfo, BasicFileAttributes attributes, HashJob job) {
+			this.fileInfo = fileInfo;
+			this.attributes = attributes;
+			this.job = job;
+		}
+	}
+
+	/**
+	 * Collects found files and queues them sorted by a key once the window is full. Synchronized, as the parallel walk
+	 * adds files from several threads.
+	 */
+	class ReorderWindow {
+		private final ToLongFunction<BasicFileAttributes> key;
+		private final int size;
+		private final List<WorkItem> pending;
+
+		ReorderWindow(ToLongFunction<BasicFileAttributes> key, int size) {
+			this.key = key;
+			this.size = size;
+			this.pending = new ArrayList<>();
+		}
+
+		synchronized void add(WorkItem item) throws InterruptedIOException {
+			item.orderKey = key.applyAsLong(item.attributes);
+			pending.add(item);
+
+			if (pending.size() >= size) {
+				flush();
+			}
+		}
 
 		/**
-		 * Add a file to the processing queue.
+		 * Queue all collected files in order. The sort is stable, so files with the same key stay in walk order.
 		 * 
-		 * @param file
-		 *            to add to the queue
+		 * @throws InterruptedIOException
+		 *             if interrupted while waiting for space in the queue
 		 */
-		public void addFile(FileInfo file) {
-			inputQueue.add(file);
+		synchronized void flush() throws InterruptedIOException {
+			pending.sort(Comparator.comparingLong(item -> item.orderKey));
+
+			try {
+				for (WorkItem item : pending) {
+					addFile(item);
+				}
+			} finally {
+				pending.clear();
+			}
+		}
+	}
+
+	/**
+	 * Add a file to the processing queue. Blocks while the queue is full. The file fails immediately if the hasher has
+	 * been shut down.
+	 * 
+	 * @param item
+	 *            to add to the queue
+	 * @throws InterruptedIOException
+	 *             if interrupted while waiting for space in the queue
+	 */
+	private void addFile(WorkItem item) throws InterruptedIOException {
+		item.job.fileQueued();
+
+		if (shutdown) {
+			fail(item);
+			return;
+		}
+
+		try {
+			inputQueue.put(item);
+		} catch (InterruptedException e) {
+			fail(item);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while queuing " + item.fileInfo.getFilePath());
 		}
 
+		if (shutdown) {
+			// the workers may already be gone
+			failQueued();
+		}
+	}
+
+	/**
+	 * This Tread takes files from the work queue, hashes them and adds them to the output queue.
+	 */
+	class HashWorker extends Thread {
 		@Override
 		public void run() {
-			while (!isInterrupted()) {
-				// grab some work
-				inputQueue.drainTo(workingList);
-
-				// process items
-				for (FileInfo f : workingList) {
-					try {
-						f.setHash(hash.hash(Files.readAllBytes(f.getFilePath())));
-						outputQueue.add(f);
-					} catch (IOException e) {
-						logger.warn("Could not hash file: " + e.getMessage());
+			try {
+				while (!isInterrupted()) {
+					process(inputQueue.take());
+
+					if (inputQueue.isEmpty()) {
+						flushResults();
 					}
 				}
+			} catch (InterruptedException e) {
+				logger.debug("{} was interrupted, stopping", getName());
+			} finally {
+				if (shutdown) {
+					failQueued();
+				}
+			}
+		}
+
+		private void process(WorkItem item) throws InterruptedException {
+			FileInfo f = item.fileInfo;
+			Path path = f.getFilePath();
+			HashCache cache = hashCache;
+			HashValue fileHash = null;
+			long bytesRead = 0;
+
+			try {
+				if (cache != null) {
+					fileHash = cache.get(path, item.attributes);
+				}
+
+				if (fileHash == null) {
+					fileHash = readAndHash(path);
+					bytesRead = item.attributes.size();
+
+					if (fileHash != null && cache != null) {
+						addToCache(cache, item, fileHash);
+					}
+				}
+			} catch (InterruptedException e) {
+				fail(item);
+				throw e;
+			}
+
+			if (fileHash == null) {
+				logger.warn("Could not hash file: {}", path);
+				fail(item);
+				return;
+			}
+
+			f.setHashValue(fileHash);
+			item.bytesRead = bytesRead;
+			addResult(item);
+		}
+
+		private void addResult(WorkItem item) throws InterruptedException {
+			List<WorkItem> full = null;
+
+			synchronized (batchLock) {
+				batch.add(item);
+
+				if (batch.size() >= batchSize) {
+					full = batch;
+					batch = new ArrayList<>(batchSize);
+				}
+			}
+
+			if (full != null) {
+				deliver(full);
+			}
+		}
+
+		private void flushResults() throws InterruptedException {
+			List<WorkItem> pending;
+
+			synchronized (batchLock) {
+				if (batch.isEmpty()) {
+					return;
+				}
+
+				pending = batch;
+				batch = new ArrayList<>(batchSize);
+			}
+
+			deliver(pending);
+		}
+
+		/**
+		 * Pass the results to the sink. Jobs are only updated after delivery, so a job does not complete before all of
+		 * its results have reached the sink.
+		 */
+		private void deliver(List<WorkItem> items) throws InterruptedException {
+			List<FileInfo> files = new ArrayList<>(items.size());
+
+			for (WorkItem item : items) {
+				files.add(item.fileInfo);
+			}
+
+			try {
+				synchronized (deliveryLock) {
+					sink.accept(files);
+				}
+			} catch (InterruptedException e) {
+				failAll(items);
+				throw e;
+			} catch (RuntimeException e) {
+				logger.warn("Failed to deliver {} results: {}", items.size(), e.toString());
+				failAll(items);
+				return;
+			}
+
+			for (WorkItem item : items) {
+				item.job.fileDone(item.bytesRead);
+			}
+		}
+
+		private void failAll(List<WorkItem> items) {
+			for (WorkItem item : items) {
+				fail(item);
+			}
+		}
+
+		private void addToCache(HashCache cache, WorkItem item, HashValue fileHash) {
+			try {
+				cache.put(item.fileInfo.getFilePath(), item.attributes, fileHash);
+			} catch (IOException e) {
+				logger.warn("Failed to cache hash for {}: {}", item.fileInfo.getFilePath(), e.getMessage());
+			}
+		}
+
+		private HashValue readAndHash(Path path) throws InterruptedException {
+			throttle.acquireFile();
+			ioPermits.acquire();
+
+			try {
+				if (throttle.getBytesPerSecond() == 0) {
+					return hashMaker.digestFile(path);
+				}
+
+				return readAndHashThrottled(path);
+			} finally {
+				ioPermits.release();
+			}
+		}
 
-				workingList.clear();
+		private HashValue readAndHashThrottled(Path path) throws InterruptedException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				return hashMaker.digestChannel(new ThrottledChannel(channel, throttle));
+			} catch (InterruptedIOException e) {
+				throw new InterruptedException(e.getMessage());
+			} catch (IOException e) {
+				logger.error("Failed to generate hash for {}, reason: {}", path, e);
+				return null;
 			}
 		}
 	}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a directory tree and queues created or modified files for hashing with a {@link DirectoryHasher}. Created
+ * by {@link DirectoryHasher#watchDirectory(String, long, TimeUnit)}.
+ * <p>
+ * Events are debounced: a file is only queued once no new event has arrived for it during the debounce time, so a
+ * file that is written in many small steps is hashed once. New directories are registered as they appear, and if
+ * the watch service drops events, the whole tree is queued again.
+ * </p>
+ */
+public class DirectoryWatch implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(DirectoryWatch.class);
+
+	private final DirectoryHasher hasher;
+	private final Path root;
+	private final long debounceNanos;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+	private final Map<Path, Long> pending = new LinkedHashMap<>();
+	private final HashJob changeJob = new HashJob();
+	private final Thread watcher;
+	private HashJob initialJob;
+
+	/**
+	 * Register the directory tree with a new watch service. Call {@link #start(HashJob)} to begin processing events.
+	 */
+	DirectoryWatch(DirectoryHasher hasher, Path root, long debounceNanos) throws IOException {
+		this.hasher = hasher;
+		this.root = root;
+		this.debounceNanos = debounceNanos;
+		this.watchService = root.getFileSystem().newWatchService();
+
+		try {
+			registerTree(root);
+		} catch (IOException e) {
+			watchService.close();
+			throw e;
+		}
+
+		this.watcher = new Thread(this::watch, "Directory watch " + root);
+		this.watcher.setDaemon(true);
+	}
+
+	void start(HashJob initialJob) {
+		this.initialJob = initialJob;
+		watcher.start();
+	}
+
+	/**
+	 * Get the job for the initial pass over the directory.
+	 * 
+	 * @return the job of the initial pass
+	 */
+	public HashJob getInitialJob() {
+		return initialJob;
+	}
+
+	/**
+	 * Get the job for files that are queued because they changed. This job completes once the watch has been closed
+	 * and all queued files are processed.
+	 * 
+	 * @return the job for changed files
+	 */
+	public HashJob getChangeJob() {
+		return changeJob;
+	}
+
+	/**
+	 * Stop watching the directory. Changes that are still waiting for the debounce time are dropped.
+	 * 
+	 * @throws IOException
+	 *             if there is an error closing the watch service
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		watcher.interrupt();
+	}
+
+	private void watch() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = watchService.poll(nextTimeout(), TimeUnit.NANOSECONDS);
+
+				if (key != null) {
+					processEvents(key);
+				}
+
+				queueDueFiles();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException | InterruptedIOException e) {
+			logger.debug("Watch for {} stopped", root);
+		} finally {
+			changeJob.walkFinished();
+		}
+	}
+
+	private long nextTimeout() {
+		if (pending.isEmpty()) {
+			return debounceNanos;
+		}
+
+		long oldest = pending.values().iterator().next();
+		return Math.max(0, oldest - System.nanoTime());
+	}
+
+	private void processEvents(WatchKey key) {
+		Path directory = watchedDirectories.get(key);
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW) {
+				logger.warn("Events for {} were lost, queuing the whole tree", root);
+				changed(root);
+				continue;
+			}
+
+			if (directory == null) {
+				continue;
+			}
+
+			Path path = directory.resolve((Path) event.context());
+
+			if (event.kind() == ENTRY_DELETE) {
+				pending.remove(path);
+			} else if (event.kind() == ENTRY_CREATE || !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+				changed(path);
+			}
+		}
+
+		if (!key.reset()) {
+			watchedDirectories.remove(key);
+		}
+	}
+
+	/**
+	 * Mark a path as changed. Directories are registered and all files in them are marked, as files may have been
+	 * created before the directory was registered.
+	 */
+	private void changed(Path path) {
+		if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			try {
+				registerTree(path);
+			} catch (IOException e) {
+				logger.warn("Failed to watch {}: {}", path, e.toString());
+			}
+		} else {
+			markPending(path);
+		}
+	}
+
+	private void markPending(Path file) {
+		// remove first so the entry moves to the end, keeping the map ordered by deadline
+		pending.remove(file);
+		pending.put(file, System.nanoTime() + debounceNanos);
+	}
+
+	private void queueDueFiles() throws InterruptedIOException {
+		long now = System.nanoTime();
+		Iterator<Entry<Path, Long>> iterator = pending.entrySet().iterator();
+
+		while (iterator.hasNext()) {
+			Entry<Path, Long> entry = iterator.next();
+
+			if (entry.getValue() - now > 0) {
+				break;
+			}
+
+			iterator.remove();
+			queueFile(entry.getKey());
+		}
+	}
+
+	private void queueFile(Path file) throws InterruptedIOException {
+		BasicFileAttributes attrs;
+
+		try {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return;
+		} catch (IOException e) {
+			logger.warn("Failed to read attributes of {}: {}", file, e.toString());
+			return;
+		}
+
+		if (attrs.isRegularFile()) {
+			hasher.queueFile(file, attrs, changeJob);
+		}
+	}
+
+	private void registerTree(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (initialJob != null) {
+					markPending(file);
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
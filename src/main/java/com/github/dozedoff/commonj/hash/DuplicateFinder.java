@@ -0,0 +1,229 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dozedoff.commonj.file.FileInfo;
+
+/**
+ * Finds duplicate files while reading as little data as possible. The search runs in stages:
+ * <ol>
+ * <li>The directories are walked and the files are grouped by size.</li>
+ * <li>For groups with more than one file, a sample from the head and tail of each file is hashed with a fast
+ * algorithm.</li>
+ * <li>Only files whose samples collide are hashed completely.</li>
+ * <li>Files with the same full hash are returned as a group.</li>
+ * </ol>
+ * Files that are not larger than the two samples are hashed completely right away. The walk happens when
+ * {@link #findDuplicates(Path...)} is called, the remaining stages run lazily as the returned stream is consumed. The
+ * stream can be made parallel to hash several size groups at once.
+ */
+public class DuplicateFinder {
+	private static final Logger logger = LoggerFactory.getLogger(DuplicateFinder.class);
+
+	/**
+	 * Default number of bytes hashed from the head and from the tail of a file.
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 16 * 1024;
+
+	private final ConcurrentHashMaker sampleHasher;
+	private final ConcurrentHashMaker fullHasher;
+	private final int sampleSize;
+	private FilenameFilter filter = (dir, name) -> true;
+	private long minimumSize = 1;
+
+	/**
+	 * Create a new {@link DuplicateFinder} that uses {@link Digests#XXH64} for samples and SHA-256 for full hashes.
+	 */
+	public DuplicateFinder() {
+		this(HashMaker.DEFAULT_ALGORITHM, DEFAULT_SAMPLE_SIZE);
+	}
+
+	/**
+	 * Create a new {@link DuplicateFinder} with the given full hash algorithm and sample size.
+	 * 
+	 * @param algorithm
+	 *            used for the full hash of candidate files, see {@link Digests}
+	 * @param sampleSize
+	 *            number of bytes hashed from the head and the tail of a file, must be greater than 0
+	 */
+	public DuplicateFinder(String algorithm, int sampleSize) {
+		if (sampleSize <= 0) {
+			throw new IllegalArgumentException("Sample size must be greater than 0");
+		}
+
+		this.sampleHasher = new ConcurrentHashMaker(Digests.XXH64);
+		this.fullHasher = new ConcurrentHashMaker(algorithm);
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Set the filter to use when walking the directories.
+	 * 
+	 * @param filter
+	 *            to use for accepting files
+	 */
+	public void setFilter(FilenameFilter filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * Set the minimum size of files to consider. The default of 1 skips empty files.
+	 * 
+	 * @param minimumSize
+	 *            in bytes
+	 */
+	public void setMinimumSize(long minimumSize) {
+		this.minimumSize = minimumSize;
+	}
+
+	/**
+	 * Find duplicate files in the given directories. The returned {@link FileInfo}s have their size and full hash set.
+	 * Files and directories that cannot be read are logged and skipped. A file is only reported once, even if the
+	 * directories overlap.
+	 * 
+	 * @param directories
+	 *            to search
+	 * @return a stream of groups of identical files, each with at least two entries
+	 * @throws IOException
+	 *             if there is an error walking the directories
+	 */
+	public Stream<List<FileInfo>> findDuplicates(Path... directories) throws IOException {
+		Map<Long, List<FileInfo>> sizeGroups = groupBySize(directories);
+		logger.info("Found {} distinct file sizes", sizeGroups.size());
+
+		return sizeGroups.values().stream().filter(group -> group.size() > 1).flatMap(this::splitGroup);
+	}
+
+	private Map<Long, List<FileInfo>> groupBySize(Path... directories) throws IOException {
+		Map<Long, List<FileInfo>> sizeGroups = new HashMap<>();
+		Set<Path> seen = new HashSet<>();
+
+		for (Path directory : directories) {
+			// links are not followed, so resolving the root is enough to get the real path of every file below it
+			Path realDirectory = directory.toRealPath();
+
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Path dir = file.getParent();
+					Path filename = file.getFileName();
+
+					if (!attrs.isRegularFile() || attrs.size() < minimumSize || dir == null || filename == null) {
+						return FileVisitResult.CONTINUE;
+					}
+
+					if (filter.accept(dir.toFile(), filename.toString())
+							&& seen.add(realDirectory.resolve(directory.relativize(file)))) {
+						FileInfo info = new FileInfo(file);
+						info.setSize(attrs.size());
+						sizeGroups.computeIfAbsent(attrs.size(), size -> new ArrayList<>()).add(info);
+					}
+
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+					logger.warn("Failed to visit {}: {}", file, exc.toString());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+
+		return sizeGroups;
+	}
+
+	private Stream<List<FileInfo>> splitGroup(List<FileInfo> sameSize) {
+		List<FileInfo> candidates = sameSize;
+
+		if (sameSize.get(0).getSize() > 2L * sampleSize) {
+			candidates = new ArrayList<>();
+
+			for (List<FileInfo> group : groupBy(sameSize, this::hashSample)) {
+				if (group.size() > 1) {
+					candidates.addAll(group);
+				}
+			}
+		}
+
+		return groupBy(candidates, this::hashFull).stream().filter(group -> group.size() > 1);
+	}
+
+	private static List<List<FileInfo>> groupBy(List<FileInfo> files, Function<FileInfo, HashValue> hashFunction) {
+		Map<HashValue, List<FileInfo>> groups = new HashMap<>();
+
+		for (FileInfo file : files) {
+			HashValue hash = hashFunction.apply(file);
+
+			if (hash != null) {
+				groups.computeIfAbsent(hash, key -> new ArrayList<>()).add(file);
+			}
+		}
+
+		return new ArrayList<>(groups.values());
+	}
+
+	private HashValue hashFull(FileInfo file) {
+		HashValue hash = fullHasher.digestFile(file.getFilePath());
+
+		if (hash != null) {
+			file.setHashValue(hash);
+		}
+
+		return hash;
+	}
+
+	private HashValue hashSample(FileInfo file) {
+		ByteBuffer sample = ByteBuffer.allocate(2 * sampleSize);
+
+		try (FileChannel channel = FileChannel.open(file.getFilePath(), StandardOpenOption.READ)) {
+			readFully(channel, sample, 0, sampleSize);
+			readFully(channel, sample, file.getSize() - sampleSize, sampleSize);
+		} catch (IOException e) {
+			logger.warn("Failed to read sample from {}: {}", file.getFilePath(), e.getMessage());
+			return null;
+		}
+
+		return sampleHasher.digest(sample.array());
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+		buffer.limit(buffer.position() + length);
+		long offset = position;
+
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset);
+
+			if (read == -1) {
+				throw new IOException("File is shorter than expected");
+			}
+
+			offset += read;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Persistent cache for file hashes. A hash is only returned if the size, last modified time and file key of the file
+ * still match the values recorded when the hash was stored, so the file contents do not need to be read for files
+ * that did not change.
+ * <p>
+ * The cache is stored as an append-only log. Updated entries are appended, the log is read sequentially on startup
+ * and later records replace earlier ones. Superseded records are removed with {@link #compact()}. A record that was
+ * only partially written, e.g. due to a crash, is discarded when the cache is opened, together with everything after
+ * the first record that cannot be read.
+ * </p>
+ * <p>
+ * All methods are thread safe.
+ * </p>
+ */
+public class HashCache implements Closeable {
+	private static final Logger logger = LoggerFactory.getLogger(HashCache.class);
+	private static final int MAGIC = 0x48434331; // HCC1
+
+	private final Path cacheFile;
+	private final String algorithm;
+	private final Map<Path, CacheEntry> entries = new HashMap<>();
+	private DataOutputStream log;
+
+	/**
+	 * Open or create a cache for hashes of the given algorithm.
+	 * 
+	 * @param cacheFile
+	 *            file to store the cache in
+	 * @param algorithm
+	 *            name of the hash algorithm the stored hashes were created with
+	 * @throws IOException
+	 *             if the cache cannot be read or was created for a different algorithm
+	 */
+	public HashCache(Path cacheFile, String algorithm) throws IOException {
+		this.cacheFile = cacheFile;
+		this.algorithm = algorithm;
+
+		if (Files.exists(cacheFile) && Files.size(cacheFile) > 0) {
+			load();
+			log = openLog(StandardOpenOption.APPEND);
+		} else {
+			log = openLog(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			writeHeader(log);
+		}
+	}
+
+	private DataOutputStream openLog(StandardOpenOption... options) throws IOException {
+		StandardOpenOption[] openOptions = new StandardOpenOption[options.length + 1];
+		System.arraycopy(options, 0, openOptions, 0, options.length);
+		openOptions[options.length] = StandardOpenOption.WRITE;
+
+		return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(cacheFile, openOptions)));
+	}
+
+	private void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeUTF(algorithm);
+	}
+
+	private void load() throws IOException {
+		long validLength;
+
+		try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)));
+				DataInputStream in = new DataInputStream(counter)) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(cacheFile + " is not a hash cache");
+			}
+
+			String storedAlgorithm = in.readUTF();
+
+			if (!algorithm.equalsIgnoreCase(storedAlgorithm)) {
+				throw new IOException("Cache " + cacheFile + " was created for " + storedAlgorithm + ", not " + algorithm);
+			}
+
+			validLength = counter.getCount();
+
+			try {
+				while (true) {
+					Path path = cacheFile.getFileSystem().getPath(in.readUTF());
+					CacheEntry entry = readEntry(in);
+					entries.put(path, entry);
+					validLength = counter.getCount();
+				}
+			} catch (EOFException e) {
+				// end of log, or a partially written record
+			} catch (IOException | InvalidPathException e) {
+				// a torn write can also leave bytes that do not form a valid record
+				logger.debug("Invalid record in {} at offset {}: {}", cacheFile, validLength, e.toString());
+			}
+		}
+
+		if (validLength < Files.size(cacheFile)) {
+			logger.warn("Discarding incomplete or invalid records at the end of {}", cacheFile);
+
+			try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {
+				channel.truncate(validLength);
+			}
+		}
+
+		logger.info("Loaded {} entries from hash cache {}", entries.size(), cacheFile);
+	}
+
+	private CacheEntry readEntry(DataInputStream in) throws IOException {
+		long size = in.readLong();
+		long lastModified = in.readLong();
+		String fileKey = in.readUTF();
+		byte[] hash = new byte[in.readUnsignedByte()];
+		in.readFully(hash);
+
+		return new CacheEntry(size, lastModified, fileKey, HashValue.wrap(hash));
+	}
+
+	private void writeRecord(DataOutputStream out, Path path, CacheEntry entry) throws IOException {
+		out.writeUTF(path.toString());
+		out.writeLong(entry.size);
+		out.writeLong(entry.lastModified);
+		out.writeUTF(entry.fileKey);
+		out.writeByte(entry.hash.length());
+		out.write(entry.hash.getBytes());
+	}
+
+	/**
+	 * Get the name of the algorithm the hashes in this cache were created with.
+	 * 
+	 * @return name of the hash algorithm
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Look up the hash of a file. The hash is only returned if the attributes still match the stored ones.
+	 * 
+	 * @param file
+	 *            to look up
+	 * @param attributes
+	 *            current attributes of the file
+	 * @return the stored hash or null if there is no valid hash
+	 */
+	public synchronized HashValue get(Path file, BasicFileAttributes attributes) {
+		CacheEntry entry = entries.get(normalize(file));
+
+		if (entry == null || !entry.matches(attributes)) {
+			return null;
+		}
+
+		return entry.hash;
+	}
+
+	/**
+	 * Store the hash of a file. The record is appended to the log.
+	 * 
+	 * @param file
+	 *            the hash belongs to
+	 * @param attributes
+	 *            of the file at the time it was hashed
+	 * @param hash
+	 *            of the file
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	public synchronized void put(Path file, BasicFileAttributes attributes, HashValue hash) throws IOException {
+		Path path = normalize(file);
+		CacheEntry entry = new CacheEntry(attributes.size(), attributes.lastModifiedTime().toMillis(),
+				fileKey(attributes), hash);
+
+		if (entry.equals(entries.get(path))) {
+			return;
+		}
+
+		try {
+			writeRecord(log, path, entry);
+		} catch (UTFDataFormatException e) {
+			logger.debug("Path {} is too long to cache", path);
+			return;
+		}
+
+		entries.put(path, entry);
+	}
+
+	/**
+	 * Get the number of files in the cache.
+	 * 
+	 * @return number of cached hashes
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Write buffered records to disk.
+	 * 
+	 * @throws IOException
+	 *             if the records cannot be written
+	 */
+	public synchronized void flush() throws IOException {
+		log.flush();
+	}
+
+	/**
+	 * Rewrite the log so it only contains the current entries. The new log is written to a temporary file, which then
+	 * replaces the old log.
+	 * 
+	 * @throws IOException
+	 *             if the log cannot be written or replaced. If it cannot be replaced, the old log stays in use
+	 */
+	public synchronized void compact() throws IOException {
+		Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			writeHeader(out);
+
+			for (Entry<Path, CacheEntry> entry : entries.entrySet()) {
+				writeRecord(out, entry.getKey(), entry.getValue());
+			}
+		}
+
+		// the log is closed first, some platforms cannot replace a file that is open
+		log.close();
+
+		try {
+			Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.deleteIfExists(tempFile);
+			throw e;
+		} finally {
+			// either the compacted or the old log, both are complete
+			log = openLog(StandardOpenOption.APPEND);
+		}
+	}
+
+	/**
+	 * Flush and close the log.
+	 * 
+	 * @throws IOException
+	 *             if the log cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		log.close();
+	}
+
+	private static Path normalize(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+
+	private static String fileKey(BasicFileAttributes attributes) {
+		Object fileKey = attributes.fileKey();
+		return fileKey == null ? "" : fileKey.toString();
+	}
+
+	private static final class CacheEntry {
+		private final long size;
+		private final long lastModified;
+		private final String fileKey;
+		private final HashValue hash;
+
+		CacheEntry(long size, long lastModified, String fileKey, HashValue hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+			this.hash = hash;
+		}
+
+		boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis()
+					&& fileKey.equals(fileKey(attributes));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CacheEntry)) {
+				return false;
+			}
+
+			CacheEntry other = (CacheEntry) obj;
+
+			return size == other.size && lastModified == other.lastModified && fileKey.equals(other.fileKey)
+					&& hash.equals(other.hash);
+		}
+	}
+}
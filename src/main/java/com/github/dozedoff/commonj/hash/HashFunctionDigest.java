@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.security.MessageDigest;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+
+/**
+ * Adapter that exposes a Guava {@link HashFunction} as a {@link MessageDigest}. 32 bit values are returned in big
+ * endian byte order to match the usual checksum notation, all other sizes use {@link HashCode#asBytes()}.
+ */
+class HashFunctionDigest extends MessageDigest {
+	private final HashFunction hashFunction;
+	private Hasher hasher;
+
+	/**
+	 * Create a new digest for the hash function.
+	 * 
+	 * @param algorithm
+	 *            name of the hash function
+	 * @param hashFunction
+	 *            to wrap
+	 */
+	HashFunctionDigest(String algorithm, HashFunction hashFunction) {
+		super(algorithm);
+		this.hashFunction = hashFunction;
+		this.hasher = hashFunction.newHasher();
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		hasher.putByte(input);
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		hasher.putBytes(input, offset, len);
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return hashFunction.bits() / Byte.SIZE;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		HashCode hashCode = hasher.hash();
+		hasher = hashFunction.newHasher();
+
+		if (hashFunction.bits() == Integer.SIZE) {
+			int value = hashCode.asInt();
+			return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+		}
+
+		return hashCode.asBytes();
+	}
+
+	@Override
+	protected void engineReset() {
+		hasher = hashFunction.newHasher();
+	}
+}
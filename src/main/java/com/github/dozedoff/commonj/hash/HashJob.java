@@ -0,0 +1,177 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle for a single {@link DirectoryHasher#hashDirectory(String)} call. Tracks the progress of the job and completes
+ * once the walk has finished and every queued file has either been hashed or failed. All counters can be read while
+ * the job is running.
+ */
+public class HashJob {
+	private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+	/**
+	 * Time constant of the current rate. Bytes hashed this long ago count for 1/e of recent ones.
+	 */
+	static final long RATE_TIME_CONSTANT = TimeUnit.SECONDS.toNanos(5);
+
+	private final AtomicLong filesQueued = new AtomicLong();
+	private final AtomicLong filesDone = new AtomicLong();
+	private final AtomicLong filesFailed = new AtomicLong();
+	private final AtomicLong bytesHashed = new AtomicLong();
+	private final CompletableFuture<HashJob> completion = new CompletableFuture<>();
+	private final long startTime = System.nanoTime();
+	private volatile long endTime;
+	private volatile boolean walkFinished;
+	private final Object rateLock = new Object();
+	private double rate;
+	private long rateUpdated = startTime;
+
+	/**
+	 * Get a future that completes with this job once all files have been processed. The future completes
+	 * exceptionally if the directory walk failed.
+	 * 
+	 * @return the future for this job
+	 */
+	public CompletableFuture<HashJob> getCompletion() {
+		return completion;
+	}
+
+	/**
+	 * Check if the job has finished.
+	 * 
+	 * @return true if all files have been processed or the walk failed
+	 */
+	public boolean isDone() {
+		return completion.isDone();
+	}
+
+	/**
+	 * Get the number of files found by the walk so far.
+	 * 
+	 * @return number of files queued for hashing
+	 */
+	public long getFilesQueued() {
+		return filesQueued.get();
+	}
+
+	/**
+	 * Get the number of files that have been hashed, including files answered from the cache.
+	 * 
+	 * @return number of hashed files
+	 */
+	public long getFilesDone() {
+		return filesDone.get();
+	}
+
+	/**
+	 * Get the number of files that could not be hashed.
+	 * 
+	 * @return number of failed files
+	 */
+	public long getFilesFailed() {
+		return filesFailed.get();
+	}
+
+	/**
+	 * Get the number of bytes read and hashed. Files answered from the cache are not counted.
+	 * 
+	 * @return number of hashed bytes
+	 */
+	public long getBytesHashed() {
+		return bytesHashed.get();
+	}
+
+	/**
+	 * Get the average hashing throughput of this job, since it was started. While the job is running the rate is
+	 * calculated up to now, afterwards up to the time the job completed. See {@link #getCurrentMegabytesPerSecond()}
+	 * for the recent throughput.
+	 * 
+	 * @return throughput in megabytes per second
+	 */
+	public double getMegabytesPerSecond() {
+		long end = isDone() ? endTime : System.nanoTime();
+		double seconds = (end - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+
+		if (seconds <= 0) {
+			return 0;
+		}
+
+		return (bytesHashed.get() / BYTES_PER_MEGABYTE) / seconds;
+	}
+
+	/**
+	 * Get the recent hashing throughput of this job. The rate is an exponentially weighted moving average with a time
+	 * constant of 5 seconds, so it drops when hashing stalls or is throttled. For the first seconds of a job it is
+	 * lower than the actual rate.
+	 * 
+	 * @return throughput in megabytes per second
+	 */
+	public double getCurrentMegabytesPerSecond() {
+		return getCurrentMegabytesPerSecond(System.nanoTime());
+	}
+
+	double getCurrentMegabytesPerSecond(long now) {
+		synchronized (rateLock) {
+			return decayedRate(now) / BYTES_PER_MEGABYTE;
+		}
+	}
+
+	/**
+	 * Add hashed bytes to the current rate. Each byte adds 1 / time constant to the rate per second, which then decays
+	 * exponentially. For a steady stream of data the rate converges to the bytes per second.
+	 */
+	void addRateSample(long bytes, long now) {
+		synchronized (rateLock) {
+			rate = decayedRate(now) + bytes / (RATE_TIME_CONSTANT / (double) TimeUnit.SECONDS.toNanos(1));
+			rateUpdated = Math.max(rateUpdated, now);
+		}
+	}
+
+	private double decayedRate(long now) {
+		long elapsed = Math.max(0, now - rateUpdated);
+		return rate * Math.exp(-elapsed / (double) RATE_TIME_CONSTANT);
+	}
+
+	void fileQueued() {
+		filesQueued.incrementAndGet();
+	}
+
+	void fileDone(long bytes) {
+		bytesHashed.addAndGet(bytes);
+		addRateSample(bytes, System.nanoTime());
+		filesDone.incrementAndGet();
+		tryComplete();
+	}
+
+	void fileFailed() {
+		filesFailed.incrementAndGet();
+		tryComplete();
+	}
+
+	void walkFinished() {
+		walkFinished = true;
+		tryComplete();
+	}
+
+	void walkFailed(Throwable cause) {
+		endTime = System.nanoTime();
+		completion.completeExceptionally(cause);
+	}
+
+	private void tryComplete() {
+		if (walkFinished && filesDone.get() + filesFailed.get() == filesQueued.get()) {
+			if (!completion.isDone()) {
+				endTime = System.nanoTime();
+			}
+
+			completion.complete(this);
+		}
+	}
+}
@@ -5,47 +5,168 @@
  */
 package com.github.dozedoff.commonj.hash;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.dozedoff.commonj.string.Convert;
-
 /**
- * Generates a SHA-2 Hash (default) for binary data, and formats the value into a Hex representation.
+ * Generates a SHA-2 Hash (default) for binary data, and formats the value into a Hex representation. Files and streams
+ * are read in chunks into a reusable buffer, which is passed to the digest in bulk. Files at or above the mapped
+ * threshold are hashed through memory mapped windows instead, which avoids copying the data into the heap.
+ * <p>
+ * For files that only grow, {@link #digestFile(Path, DigestState)} saves the digest state, so that the next hash only
+ * needs to read the appended data.
+ * </p>
  */
 public class HashMaker {
 	private static Logger logger = LoggerFactory.getLogger(HashMaker.class);
-	private static final String DEFAULT_ALGORITHM = "SHA-256";
+	static final String DEFAULT_ALGORITHM = "SHA-256";
+
+	/**
+	 * Default size of the read buffer in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Default file size in bytes from which on files are memory mapped for hashing. See HashMakerBenchmark in the
+	 * tests for picking a value for the target hardware.
+	 */
+	public static final long DEFAULT_MAPPED_THRESHOLD = 16 * 1024 * 1024;
+
+	/**
+	 * Size of the window in bytes that is mapped at a time when hashing large files.
+	 */
+	public static final long MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
 	private MessageDigest md;
+	private final int bufferSize;
+	private ByteBuffer buffer;
+	private long mappedThreshold = DEFAULT_MAPPED_THRESHOLD;
 
 	/**
 	 * Create a new {@link HashMaker} with the default (SHA-256) algorithm.
 	 */
 	public HashMaker() {
-		createDigest(DEFAULT_ALGORITHM);
+		this(DEFAULT_ALGORITHM);
 	}
 
 	/**
-	 * Create a new {@link HashMaker} with the specified algorithm.
+	 * Create a new {@link HashMaker} with the specified algorithm. See {@link Digests} for the supported algorithms.
 	 * 
 	 * @param algorithm
 	 *            to use for hashing
 	 */
 	public HashMaker(String algorithm) {
+		this(algorithm, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Create a new {@link HashMaker} with the specified algorithm and read buffer size.
+	 * 
+	 * @param algorithm
+	 *            to use for hashing
+	 * @param bufferSize
+	 *            size of the read buffer in bytes, must be greater than 0
+	 */
+	public HashMaker(String algorithm, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be greater than 0");
+		}
+
+		this.bufferSize = bufferSize;
 		createDigest(algorithm);
 	}
 
+	/**
+	 * Create a new {@link HashMaker} that uses the given digest.
+	 * 
+	 * @param md
+	 *            digest to use for hashing, must not be shared with other instances
+	 * @param bufferSize
+	 *            size of the read buffer in bytes, must be greater than 0
+	 */
+	HashMaker(MessageDigest md, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be greater than 0");
+		}
+
+		this.bufferSize = bufferSize;
+		this.md = md;
+	}
+
+	/**
+	 * Create a fresh copy of the digest used by this {@link HashMaker}. The digest is cloned if possible, which avoids
+	 * the provider lookup of {@link MessageDigest#getInstance(String)}.
+	 * 
+	 * @return a new digest instance for the same algorithm
+	 */
+	MessageDigest copyDigest() {
+		try {
+			MessageDigest copy = (MessageDigest) md.clone();
+			copy.reset();
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			logger.debug("Digest {} cannot be cloned, creating a new instance", md.getAlgorithm());
+		}
+
+		try {
+			return Digests.getInstance(md.getAlgorithm());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algorithm " + md.getAlgorithm() + " is no longer available", e);
+		}
+	}
+
+	/**
+	 * Get the size of the read buffer.
+	 * 
+	 * @return the buffer size in bytes
+	 */
+	int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Set the file size from which on files are hashed through memory mapped windows instead of the read buffer. Use
+	 * {@link Long#MAX_VALUE} to never map files.
+	 * 
+	 * @param mappedThreshold
+	 *            file size in bytes, must not be negative
+	 */
+	public void setMappedThreshold(long mappedThreshold) {
+		if (mappedThreshold < 0) {
+			throw new IllegalArgumentException("Mapped threshold cannot be negative");
+		}
+
+		this.mappedThreshold = mappedThreshold;
+	}
+
+	/**
+	 * Get the file size from which on files are memory mapped for hashing.
+	 * 
+	 * @return the threshold in bytes
+	 */
+	public long getMappedThreshold() {
+		return mappedThreshold;
+	}
+
 	private void createDigest(String algorithm) {
 		try {
-			md = MessageDigest.getInstance(algorithm);
+			md = Digests.getInstance(algorithm);
 		} catch (NoSuchAlgorithmException e1) {
 			logger.error("Unable to find Algorithm {}, falling back to {}", algorithm, DEFAULT_ALGORITHM);
 			createDigest(DEFAULT_ALGORITHM);
@@ -60,15 +181,25 @@ public class HashMaker {
 	 * @return hash Hash as a hex value
 	 */
 	public String hash(byte[] data) {
+		return toHex(digest(data));
+	}
+
+	/**
+	 * Calculate the hash for the provided binary data.
+	 * 
+	 * @param data
+	 *            Binary data
+	 * @return the hash, or null if there is no data
+	 */
+	public HashValue digest(byte[] data) {
 		if (data == null) {
 			logger.error("No data");
 			return null;
 		}
 
 		md.update(data);
-		byte[] rawHash = md.digest();
 
-		return Convert.byteToHex(rawHash);
+		return HashValue.wrap(md.digest());
 	}
 
 	/**
@@ -79,30 +210,280 @@ public class HashMaker {
 	 * @return the hash of the file or null if there was an error
 	 */
 	public String hashFile(Path file) {
-		byte[] rawHash;
+		return toHex(digestFile(file));
+	}
 
+	/**
+	 * Calculate the hash for the provided path.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @return the hash of the file or null if there was an error
+	 */
+	public HashValue digestFile(Path file) {
 		if (file == null || !Files.exists(file)) {
 			return null;
 		}
 
-		try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
-			while (true) {
-				int data = stream.read();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
 
-				if (data == -1) {
+			if (size >= mappedThreshold && size > 0) {
+				updateMapped(channel, size);
+				return HashValue.wrap(md.digest());
+			}
+
+			return digestChannel(channel);
+		} catch (IOException e) {
+			logger.error("Failed to generate hash for {}, reason: {}", file, e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Calculate the hash for the provided path, continuing from a previous state if the file has only been appended
+	 * to. The previous state is used if the file key matches, the file is not shorter and the last
+	 * {@link DigestState#TAIL_SIZE} bytes before the previous length are unchanged. Otherwise the whole file is read.
+	 * Files are always read through the buffer, not memory mapped.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @param previous
+	 *            state returned by an earlier call for the same file, or null
+	 * @return the state containing the hash of the file, or null if there was an error
+	 */
+	public DigestState digestFile(Path file, DigestState previous) {
+		if (file == null || !Files.exists(file)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+			return digestChannel(channel, fileKey, previous);
+		} catch (IOException e) {
+			logger.error("Failed to generate hash for {}, reason: {}", file, e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Hash the channel up to the size it has when the hash starts, so that data appended while hashing is left for
+	 * the next call.
+	 */
+	DigestState digestChannel(FileChannel channel, Object fileKey, DigestState previous) throws IOException {
+		long size = channel.size();
+		MessageDigest digest = null;
+		long start = 0;
+
+		if (canResume(previous, channel, fileKey, size)) {
+			if (size == previous.getLength()) {
+				return previous;
+			}
+
+			digest = resumeDigest(previous);
+			start = previous.getLength();
+		}
+
+		if (digest == null) {
+			digest = copyDigest();
+			start = 0;
+		}
+
+		channel.position(start);
+		long length = start + update(digest, channel, size - start);
+
+		MessageDigest saved = cloneOrNull(digest);
+		HashValue hash = HashValue.wrap(digest.digest());
+
+		return new DigestState(md.getAlgorithm(), fileKey, length, readTail(channel, length), saved, hash);
+	}
+
+	private boolean canResume(DigestState previous, FileChannel channel, Object fileKey, long size)
+			throws IOException {
+		if (previous == null || !previous.isResumable()) {
+			return false;
+		}
+
+		if (!md.getAlgorithm().equals(previous.getAlgorithm()) || !Objects.equals(fileKey, previous.getFileKey())) {
+			return false;
+		}
+
+		if (size < previous.getLength()) {
+			return false;
+		}
+
+		return previous.tailMatches(readTail(channel, previous.getLength()));
+	}
+
+	private MessageDigest resumeDigest(DigestState previous) {
+		try {
+			return previous.copyDigest();
+		} catch (CloneNotSupportedException e) {
+			return null;
+		}
+	}
+
+	private static MessageDigest cloneOrNull(MessageDigest digest) {
+		try {
+			return (MessageDigest) digest.clone();
+		} catch (CloneNotSupportedException e) {
+			logger.debug("Digest {} cannot be cloned, state will not be resumable", digest.getAlgorithm());
+			return null;
+		}
+	}
+
+	/**
+	 * Read up to {@link DigestState#TAIL_SIZE} bytes before the given end position.
+	 */
+	private static byte[] readTail(FileChannel channel, long end) throws IOException {
+		int tailSize = (int) Math.min(DigestState.TAIL_SIZE, end);
+		ByteBuffer tail = ByteBuffer.allocate(tailSize);
+		long position = end - tailSize;
+
+		while (tail.hasRemaining()) {
+			int read = channel.read(tail, position + tail.position());
+
+			if (read == -1) {
+				throw new IOException("Unexpected end of file while reading " + tailSize + " bytes at " + position);
+			}
+		}
+
+		return tail.array();
+	}
+
+	/**
+	 * Calculate the hash for the data read from the stream, represented as a hex string. The stream is read until
+	 * the end, but not closed.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return the hash of the data read from the stream
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public String hashStream(InputStream stream) throws IOException {
+		return toHex(digestStream(stream));
+	}
+
+	/**
+	 * Calculate the hash for the data read from the stream. The stream is read until the end, but not closed.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return the hash of the data read from the stream
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public HashValue digestStream(InputStream stream) throws IOException {
+		return digestChannel(Channels.newChannel(stream));
+	}
+
+	/**
+	 * Calculate the hash for the data read from the channel, represented as a hex string. The channel is read until
+	 * the end, but not closed.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return the hash of the data read from the channel
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public String hashChannel(ReadableByteChannel channel) throws IOException {
+		return toHex(digestChannel(channel));
+	}
+
+	/**
+	 * Calculate the hash for the data read from the channel. The channel is read until the end, but not closed.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return the hash of the data read from the channel
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public HashValue digestChannel(ReadableByteChannel channel) throws IOException {
+		update(channel);
+
+		return HashValue.wrap(md.digest());
+	}
+
+	private static String toHex(HashValue hash) {
+		if (hash == null) {
+			return null;
+		}
+
+		return hash.toHex();
+	}
+
+	/**
+	 * Feed the contents of the channel to the digest. On error the digest is reset, so that partially read data does
+	 * not end up in the next hash.
+	 */
+	private void update(ReadableByteChannel channel) throws IOException {
+		update(md, channel);
+	}
+
+	private void update(MessageDigest digest, ReadableByteChannel channel) throws IOException {
+		update(digest, channel, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Feed at most limit bytes of the channel to the digest.
+	 * 
+	 * @return the number of bytes read
+	 */
+	private long update(MessageDigest digest, ReadableByteChannel channel, long limit) throws IOException {
+		ByteBuffer readBuffer = getBuffer();
+		long total = 0;
+
+		try {
+			while (total < limit) {
+				readBuffer.limit((int) Math.min(readBuffer.capacity(), limit - total));
+				int read = channel.read(readBuffer);
+
+				if (read == -1) {
 					break;
 				}
 
-				md.update((byte) data);
+				total += read;
+				readBuffer.flip();
+				digest.update(readBuffer);
+				readBuffer.clear();
 			}
 
-			rawHash = md.digest();
+			return total;
+		} catch (IOException e) {
+			digest.reset();
+			throw e;
+		} finally {
+			readBuffer.clear();
+		}
+	}
 
-			return Convert.byteToHex(rawHash);
+	/**
+	 * Feed the file to the digest by mapping it in windows of {@link #MAPPED_WINDOW_SIZE}. On error the digest is
+	 * reset.
+	 */
+	private void updateMapped(FileChannel channel, long size) throws IOException {
+		try {
+			for (long position = 0; position < size; position += MAPPED_WINDOW_SIZE) {
+				long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - position);
+				MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, windowSize);
+				md.update(window);
+			}
 		} catch (IOException e) {
-			logger.error("Failed to generate hash for {}, reason: {}", file, e);
+			md.reset();
+			throw e;
 		}
+	}
 
-		return null;
+	private ByteBuffer getBuffer() {
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+
+		return buffer;
 	}
 }
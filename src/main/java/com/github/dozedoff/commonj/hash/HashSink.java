@@ -0,0 +1,39 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.List;
+
+import com.github.dozedoff.commonj.file.FileInfo;
+
+/**
+ * Receives the results of a {@link DirectoryHasher} in batches. Batches are delivered one at a time, so implementations
+ * do not need to be thread safe. While a batch is being delivered, the workers that filled the next batch wait, so a
+ * sink that blocks slows down hashing instead of letting results pile up in memory.
+ */
+@FunctionalInterface
+public interface HashSink {
+	/**
+	 * Accept a batch of hashed files. The list must not be kept after this method returns.
+	 * 
+	 * @param batch
+	 *            of hashed files, never empty
+	 * @throws InterruptedException
+	 *             if interrupted while waiting, e.g. for space in a queue. The files in the batch are counted as
+	 *             failed
+	 */
+	void accept(List<FileInfo> batch) throws InterruptedException;
+
+	/**
+	 * Called for a file that could not be hashed or delivered, before it is counted as failed. Unlike
+	 * {@link #accept(List)}, this may be called from several threads at once. The default does nothing.
+	 * 
+	 * @param file
+	 *            that failed
+	 */
+	default void failed(FileInfo file) {
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.Arrays;
+
+import com.github.dozedoff.commonj.string.Convert;
+
+/**
+ * Immutable binary hash value. Stores the raw digest bytes instead of a hex {@link String}, which needs less than half
+ * the memory and is faster to compare. The hex representation is only created when requested.
+ */
+public final class HashValue implements Comparable<HashValue> {
+	private final byte[] value;
+
+	private HashValue(byte[] value) {
+		this.value = value;
+	}
+
+	/**
+	 * Create a new {@link HashValue} for the given bytes. The array is copied.
+	 * 
+	 * @param value
+	 *            raw hash bytes
+	 * @return a new {@link HashValue}
+	 * @throws IllegalArgumentException
+	 *             if the value is null
+	 */
+	public static HashValue of(byte[] value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Value cannot be null");
+		}
+
+		return new HashValue(value.clone());
+	}
+
+	/**
+	 * Create a new {@link HashValue} from a hex string.
+	 * 
+	 * @param hex
+	 *            the hash as hex string, as returned by {@link #toString()}
+	 * @return a new {@link HashValue}
+	 * @throws IllegalArgumentException
+	 *             if the string is null or not valid hex
+	 */
+	public static HashValue fromHex(String hex) {
+		if (hex == null) {
+			throw new IllegalArgumentException("Hex string cannot be null");
+		}
+
+		return new HashValue(Convert.hexToByte(hex));
+	}
+
+	/**
+	 * Wrap a freshly created digest without copying it. The caller must not modify the array afterwards.
+	 * 
+	 * @param digest
+	 *            the digest bytes
+	 * @return a {@link HashValue} backed by the array
+	 */
+	static HashValue wrap(byte[] digest) {
+		return new HashValue(digest);
+	}
+
+	/**
+	 * Get a copy of the hash bytes.
+	 * 
+	 * @return the raw hash bytes
+	 */
+	public byte[] getBytes() {
+		return value.clone();
+	}
+
+	/**
+	 * Get the first eight bytes of the hash as a big-endian long, padded with zeros if the hash is shorter. Used as a
+	 * compact key where a collision of the first 64 bits is acceptable.
+	 * 
+	 * @return the first eight bytes as long
+	 */
+	long prefix() {
+		long prefix = 0;
+
+		for (int i = 0; i < Long.BYTES; i++) {
+			prefix <<= 8;
+
+			if (i < value.length) {
+				prefix |= value[i] & 0xFF;
+			}
+		}
+
+		return prefix;
+	}
+
+	/**
+	 * Get the length of the hash.
+	 * 
+	 * @return the length in bytes
+	 */
+	public int length() {
+		return value.length;
+	}
+
+	/**
+	 * Get the hash as hex string.
+	 * 
+	 * @return the upper case hex representation of the hash
+	 */
+	public String toHex() {
+		return Convert.byteToHex(value);
+	}
+
+	/**
+	 * Get the hash as hex string, same as {@link #toHex()}.
+	 * 
+	 * @return the upper case hex representation of the hash
+	 */
+	@Override
+	public String toString() {
+		return toHex();
+	}
+
+	/**
+	 * Hashes are already evenly distributed, so the first four bytes are used directly.
+	 * 
+	 * @return hash code for this object
+	 */
+	@Override
+	public int hashCode() {
+		if (value.length < Integer.BYTES) {
+			return Arrays.hashCode(value);
+		}
+
+		return (value[0] << 24) | (value[1] & 0xFF) << 16 | (value[2] & 0xFF) << 8 | (value[3] & 0xFF);
+	}
+
+	/**
+	 * Check if two hash values contain the same bytes.
+	 * 
+	 * @return true if both values are equal, else false
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+
+		if (!(obj instanceof HashValue)) {
+			return false;
+		}
+
+		return Arrays.equals(value, ((HashValue) obj).value);
+	}
+
+	/**
+	 * Compare the hash bytes as unsigned values. Shorter hashes that are a prefix of a longer hash are ordered first.
+	 * 
+	 * @param other
+	 *            hash to compare to
+	 * @return a negative value, zero or a positive value if this hash is smaller, equal or greater
+	 */
+	@Override
+	public int compareTo(HashValue other) {
+		int length = Math.min(value.length, other.value.length);
+
+		for (int i = 0; i < length; i++) {
+			int compare = Integer.compare(value[i] & 0xFF, other.value[i] & 0xFF);
+
+			if (compare != 0) {
+				return compare;
+			}
+		}
+
+		return Integer.compare(value.length, other.value.length);
+	}
+}
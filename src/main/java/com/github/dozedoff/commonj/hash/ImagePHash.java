@@ -19,9 +19,11 @@ import java.io.InputStream;
 
 import javax.imageio.ImageIO;
 
+import com.github.dozedoff.commonj.helper.DctStrategy;
 import com.github.dozedoff.commonj.helper.TransformHelper;
 import com.github.dozedoff.commonj.util.Bits;
 import com.github.dozedoff.commonj.util.ImageUtil;
+import com.github.dozedoff.commonj.util.LuminanceScaler;
 
 /**
  * Class for calculating a DCT based hash for images.
@@ -36,6 +38,9 @@ public class ImagePHash {
 	private int resizedImageSize = 0;
 	private int dctMatrixSize = 0;
 	private TransformHelper transformHelper;
+	private final ThreadLocal<Workspace> workspace;
+	private volatile boolean directLuminance;
+	private volatile boolean areaAveraging;
 
 	/**
 	 * Create a default hasher for images with a size of 32x32.
@@ -53,15 +58,58 @@ public class ImagePHash {
 	 *            size of the top left portion of the DCT matrix to keep
 	 */
 	public ImagePHash(int resizedImageSize, int dctMatrixSize) {
+		this(resizedImageSize, dctMatrixSize, DctStrategy.SEPARABLE);
+	}
+
+	/**
+	 * Create a new hasher for the given image size and DCT matrix, using the given DCT strategy. The strategies give
+	 * the same hashes, except if a DCT value is within rounding distance of the average.
+	 * 
+	 * @param resizedImageSize
+	 *            size of the image
+	 * @param dctMatrixSize
+	 *            size of the top left portion of the DCT matrix to keep
+	 * @param strategy
+	 *            to calculate the DCT with, {@link DctStrategy#FAST} needs an image size that is a power of two
+	 */
+	public ImagePHash(int resizedImageSize, int dctMatrixSize, DctStrategy strategy) {
 		this.resizedImageSize = resizedImageSize;
 		this.dctMatrixSize = dctMatrixSize;
 
 		// TODO validate parameters
 
-		transformHelper = new TransformHelper(resizedImageSize);
+		transformHelper = new TransformHelper(resizedImageSize, strategy);
+		workspace = ThreadLocal.withInitial(() -> new Workspace(resizedImageSize));
 		ImageIO.setUseCache(false);
 	}
 
+	/**
+	 * Calculate the gray values from the resized image directly, with {@link ImageUtil#toLuminance(BufferedImage, double[])},
+	 * instead of converting it with {@link ImageUtil#toGrayscale(BufferedImage)}. This is faster, but the hashes are
+	 * not the same as with the conversion. For the test images they differ by up to 2 bits, so do not mix hashes
+	 * calculated with different settings.
+	 * 
+	 * @param directLuminance
+	 *            true to read the luminance directly
+	 */
+	public void setDirectLuminance(boolean directLuminance) {
+		this.directLuminance = directLuminance;
+	}
+
+	/**
+	 * Scale the image and calculate the gray values in one step, with
+	 * {@link ImageUtil#toLuminanceScaled(BufferedImage, int, int, double[])}. This skips the intermediate images and
+	 * takes precedence over {@link #setDirectLuminance(boolean)}. The scaling differs from Java AWT, so the hashes are
+	 * not the same as with the default pipeline. For the test images they differ by up to 4 bits, so do not mix hashes
+	 * calculated with different settings.
+	 * 
+	 * @param areaAveraging
+	 *            true to scale by area averaging
+	 */
+	public void setAreaAveraging(boolean areaAveraging) {
+		this.areaAveraging = areaAveraging;
+	}
+
 	/**
 	 * 
 	 * @param is
@@ -75,7 +123,10 @@ public class ImagePHash {
 	}
 
 	/**
-	 * Calculate the hash for a image.
+	 * Calculate the hash for a image. The resized image and all intermediate values are kept in buffers per thread
+	 * and reused for the next image. Apart from the AWT scaling and gray conversion, hashing does not allocate memory.
+	 * With {@link #setAreaAveraging(boolean)}, nothing is allocated as long as the image has the same size as the
+	 * previous one hashed on that thread.
 	 * 
 	 * @param img
 	 *            image to calculate the hash for
@@ -83,7 +134,21 @@ public class ImagePHash {
 	 * @throws IOException if there is a error 
 	 */
 	public long getLongHash(BufferedImage img) throws IOException {
-		double[][] dct = calculateDctMap(img);
+		Workspace work = workspace.get();
+
+		// steps 1 to 3, see calculateDctMap
+		if (areaAveraging) {
+			work.getScaler().scale(img, work.pixels);
+		} else if (directLuminance) {
+			ImageUtil.resizeImage(img, work.getResizedRgb());
+			ImageUtil.toLuminance(work.getResizedRgb(), work.pixels);
+		} else {
+			ImageUtil.resizeImage(img, work.resized);
+			ImageUtil.toGrayscale(work.resized);
+			ImageUtil.toDoubleArray(work.resized, work.pixels);
+		}
+
+		transformHelper.transformDCT(work.pixels, work.dct);
 
 		/*
 		 * 4. Reduce the DCT. This is the magic step. While the DCT is 32x32, just keep the top-left 8x8. Those represent the lowest
@@ -95,8 +160,8 @@ public class ImagePHash {
 		 * average).
 		 */
 
-		double dctAvg = TransformHelper.dctAverage(dct, dctMatrixSize);
-		long hash = convertToLong(dct, dctAvg);
+		double dctAvg = TransformHelper.dctAverage(work.dct, resizedImageSize, dctMatrixSize);
+		long hash = convertToLong(work.dct, dctAvg);
 		return hash;
 	}
 
@@ -159,7 +224,7 @@ public class ImagePHash {
 		return dctMap;
 	}
 
-	private long convertToLong(double[][] dctVals, double avg) {
+	private long convertToLong(double[] dctVals, double avg) {
 		if (dctMatrixSize > 9) {
 			throw new IllegalArgumentException("The selected smallerSize value is to big for the long datatype");
 		}
@@ -168,11 +233,47 @@ public class ImagePHash {
 
 		for (int x = 0; x < dctMatrixSize; x++) {
 			for (int y = 0; y < dctMatrixSize; y++) {
-				hash += (dctVals[x][y] > avg ? 1 : 0);
+				hash += (dctVals[x * resizedImageSize + y] > avg ? 1 : 0);
 				hash = Long.rotateLeft(hash, 1);
 			}
 		}
 
 		return hash;
 	}
+
+	/**
+	 * Buffers for hashing on one thread. Values are stored row-major, element [x][y] at index x * size + y.
+	 */
+	private static final class Workspace {
+		final BufferedImage resized;
+		final double[] pixels;
+		final double[] dct;
+		private BufferedImage resizedRgb;
+		private LuminanceScaler scaler;
+
+		Workspace(int size) {
+			resized = ImageUtil.createResizeTarget(size, size);
+			pixels = new double[size * size];
+			dct = new double[size * size];
+		}
+
+		/**
+		 * Transparent areas end up black, as with the premultiplied default target.
+		 */
+		BufferedImage getResizedRgb() {
+			if (resizedRgb == null) {
+				resizedRgb = new BufferedImage(resized.getWidth(), resized.getHeight(), BufferedImage.TYPE_INT_RGB);
+			}
+
+			return resizedRgb;
+		}
+
+		LuminanceScaler getScaler() {
+			if (scaler == null) {
+				scaler = new LuminanceScaler(resized.getWidth(), resized.getHeight());
+			}
+
+			return scaler;
+		}
+	}
 }
@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+/**
+ * Open addressing hash table from long keys to int counts, backed by two primitive arrays. Uses linear probing, entries
+ * are removed by shifting the following entries back, so no tombstones are needed. A count that drops to zero removes
+ * the key. Not thread safe.
+ */
+class LongIntTable {
+	private static final int INITIAL_CAPACITY = 16;
+	private static final double MAX_LOAD = 0.6;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	// 0 marks empty slots, so the count for key 0 is kept separately
+	private int zeroValue;
+
+	LongIntTable() {
+		this(INITIAL_CAPACITY);
+	}
+
+	LongIntTable(int expectedSize) {
+		int slots = (int) Math.min(1 << 30, Math.max(INITIAL_CAPACITY, expectedSize / MAX_LOAD));
+		int capacity = Integer.highestOneBit(slots - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private int slot(long key) {
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ (mixed >>> 32)) & mask;
+	}
+
+	/**
+	 * Get the count for a key.
+	 * 
+	 * @return the count, 0 if the key is not in the table
+	 */
+	int get(long key) {
+		if (key == 0) {
+			return zeroValue;
+		}
+
+		for (int i = slot(key);; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+
+			if (keys[i] == 0) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Add to the count of a key.
+	 * 
+	 * @return the new count
+	 */
+	int add(long key, int delta) {
+		if (key == 0) {
+			int old = zeroValue;
+			zeroValue += delta;
+			size += (old == 0 ? 1 : 0) - (zeroValue == 0 ? 1 : 0);
+			return zeroValue;
+		}
+
+		int i = slot(key);
+
+		while (keys[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+
+		if (keys[i] == 0) {
+			if (delta == 0) {
+				return 0;
+			}
+
+			keys[i] = key;
+			values[i] = delta;
+			size++;
+
+			if (size > keys.length * MAX_LOAD) {
+				rehash(keys.length * 2);
+			}
+
+			return delta;
+		}
+
+		values[i] += delta;
+		int value = values[i];
+
+		if (value == 0) {
+			removeAt(i);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Remove the entry at the slot, and move back entries that were pushed past it.
+	 */
+	private void removeAt(int slot) {
+		size--;
+		int gap = slot;
+
+		for (int i = (gap + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+			int home = slot(keys[i]);
+
+			// move the entry into the gap if its home slot is not between the gap and its current position
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				values[gap] = values[i];
+				gap = i;
+			}
+		}
+
+		keys[gap] = 0;
+		values[gap] = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+
+		for (int j = 0; j < oldKeys.length; j++) {
+			long key = oldKeys[j];
+
+			if (key != 0) {
+				int i = slot(key);
+
+				while (keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	/**
+	 * Get the number of keys with a count other than 0.
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates several hashes and checksums in a single pass over the data. Every chunk that is read is passed to all
+ * digests before the next one is read, so the data is only read once. The results are returned as a map from the
+ * algorithm name, as passed to the constructor, to the hash. The digest methods return {@link HashValue}s, the hash
+ * methods their hex representation.
+ */
+public class MultiHashMaker {
+	private static final Logger logger = LoggerFactory.getLogger(MultiHashMaker.class);
+
+	private final String[] algorithms;
+	private final MessageDigest[] digests;
+	private final ByteBuffer buffer;
+	private long mappedThreshold = HashMaker.DEFAULT_MAPPED_THRESHOLD;
+
+	/**
+	 * Create a new {@link MultiHashMaker} for the given algorithms. See {@link Digests} for the supported algorithms.
+	 * 
+	 * @param algorithms
+	 *            to calculate, at least one
+	 * @throws IllegalArgumentException
+	 *             if no algorithm is given, or an algorithm is unknown or duplicated
+	 */
+	public MultiHashMaker(String... algorithms) {
+		this(HashMaker.DEFAULT_BUFFER_SIZE, algorithms);
+	}
+
+	/**
+	 * Create a new {@link MultiHashMaker} for the given algorithms and read buffer size.
+	 * 
+	 * @param bufferSize
+	 *            size of the read buffer in bytes, must be greater than 0
+	 * @param algorithms
+	 *            to calculate, at least one
+	 * @throws IllegalArgumentException
+	 *             if no algorithm is given, or an algorithm is unknown or duplicated
+	 */
+	public MultiHashMaker(int bufferSize, String... algorithms) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be greater than 0");
+		}
+
+		if (algorithms == null || algorithms.length == 0) {
+			throw new IllegalArgumentException("At least one algorithm is required");
+		}
+
+		this.algorithms = algorithms.clone();
+		this.digests = new MessageDigest[algorithms.length];
+		// heap buffer, so the digests can read the backing array without copying it
+		this.buffer = ByteBuffer.allocate(bufferSize);
+
+		for (int i = 0; i < algorithms.length; i++) {
+			for (int j = 0; j < i; j++) {
+				if (algorithms[j].equalsIgnoreCase(algorithms[i])) {
+					throw new IllegalArgumentException("Duplicate algorithm " + algorithms[i]);
+				}
+			}
+
+			try {
+				digests[i] = Digests.getInstance(algorithms[i]);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException("Unknown algorithm " + algorithms[i], e);
+			}
+		}
+	}
+
+	/**
+	 * Set the file size from which on files are hashed through memory mapped windows. See
+	 * {@link HashMaker#setMappedThreshold(long)}.
+	 * 
+	 * @param mappedThreshold
+	 *            file size in bytes, must not be negative
+	 */
+	public void setMappedThreshold(long mappedThreshold) {
+		if (mappedThreshold < 0) {
+			throw new IllegalArgumentException("Mapped threshold cannot be negative");
+		}
+
+		this.mappedThreshold = mappedThreshold;
+	}
+
+	/**
+	 * Calculate the hashes for the provided binary data, represented as hex strings.
+	 * 
+	 * @param data
+	 *            Binary data
+	 * @return hashes as hex values, keyed by algorithm, or null if there is no data
+	 */
+	public Map<String, String> hash(byte[] data) {
+		return toHex(digest(data));
+	}
+
+	/**
+	 * Calculate the hashes for the provided binary data.
+	 * 
+	 * @param data
+	 *            Binary data
+	 * @return hashes keyed by algorithm, or null if there is no data
+	 */
+	public Map<String, HashValue> digest(byte[] data) {
+		if (data == null) {
+			logger.error("No data");
+			return null;
+		}
+
+		for (MessageDigest md : digests) {
+			md.update(data);
+		}
+
+		return finish();
+	}
+
+	/**
+	 * Calculate the hashes for the provided path, represented as hex strings.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @return hashes as hex values, keyed by algorithm, or null if there was an error
+	 */
+	public Map<String, String> hashFile(Path file) {
+		return toHex(digestFile(file));
+	}
+
+	/**
+	 * Calculate the hashes for the provided path.
+	 * 
+	 * @param file
+	 *            to read and hash
+	 * @return hashes keyed by algorithm, or null if there was an error
+	 */
+	public Map<String, HashValue> digestFile(Path file) {
+		if (file == null || !Files.exists(file)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size >= mappedThreshold && size > 0) {
+				updateMapped(channel, size);
+				return finish();
+			}
+
+			return digestChannel(channel);
+		} catch (IOException e) {
+			logger.error("Failed to generate hashes for {}, reason: {}", file, e);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Calculate the hashes for the data read from the stream, represented as hex strings. The stream is read until the
+	 * end, but not closed.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return hashes as hex values, keyed by algorithm
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public Map<String, String> hashStream(InputStream stream) throws IOException {
+		return toHex(digestStream(stream));
+	}
+
+	/**
+	 * Calculate the hashes for the data read from the stream. The stream is read until the end, but not closed.
+	 * 
+	 * @param stream
+	 *            to read and hash
+	 * @return hashes keyed by algorithm
+	 * @throws IOException
+	 *             if there is an error reading the stream
+	 */
+	public Map<String, HashValue> digestStream(InputStream stream) throws IOException {
+		return digestChannel(Channels.newChannel(stream));
+	}
+
+	/**
+	 * Calculate the hashes for the data read from the channel, represented as hex strings. The channel is read until
+	 * the end, but not closed.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return hashes as hex values, keyed by algorithm
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public Map<String, String> hashChannel(ReadableByteChannel channel) throws IOException {
+		return toHex(digestChannel(channel));
+	}
+
+	/**
+	 * Calculate the hashes for the data read from the channel. The channel is read until the end, but not closed.
+	 * 
+	 * @param channel
+	 *            to read and hash
+	 * @return hashes keyed by algorithm
+	 * @throws IOException
+	 *             if there is an error reading the channel
+	 */
+	public Map<String, HashValue> digestChannel(ReadableByteChannel channel) throws IOException {
+		try {
+			while (channel.read(buffer) != -1) {
+				for (MessageDigest md : digests) {
+					md.update(buffer.array(), 0, buffer.position());
+				}
+
+				buffer.clear();
+			}
+		} catch (IOException e) {
+			reset();
+			throw e;
+		} finally {
+			buffer.clear();
+		}
+
+		return finish();
+	}
+
+	/**
+	 * Pass each mapped window to the digests in buffer sized slices, so the slice is still cached when the next digest
+	 * reads it.
+	 */
+	private void updateMapped(FileChannel channel, long size) throws IOException {
+		int sliceSize = buffer.capacity();
+
+		try {
+			for (long position = 0; position < size; position += HashMaker.MAPPED_WINDOW_SIZE) {
+				long windowSize = Math.min(HashMaker.MAPPED_WINDOW_SIZE, size - position);
+				MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, windowSize);
+
+				for (int offset = 0; offset < windowSize; offset += sliceSize) {
+					int limit = (int) Math.min(offset + (long) sliceSize, windowSize);
+
+					for (MessageDigest md : digests) {
+						window.limit(limit);
+						window.position(offset);
+						md.update(window);
+					}
+				}
+			}
+		} catch (IOException e) {
+			reset();
+			throw e;
+		}
+	}
+
+	private Map<String, HashValue> finish() {
+		Map<String, HashValue> hashes = new LinkedHashMap<>();
+
+		for (int i = 0; i < digests.length; i++) {
+			hashes.put(algorithms[i], HashValue.wrap(digests[i].digest()));
+		}
+
+		return hashes;
+	}
+
+	private static Map<String, String> toHex(Map<String, HashValue> hashes) {
+		if (hashes == null) {
+			return null;
+		}
+
+		Map<String, String> hex = new LinkedHashMap<>();
+
+		for (Map.Entry<String, HashValue> entry : hashes.entrySet()) {
+			hex.put(entry.getKey(), entry.getValue().toHex());
+		}
+
+		return hex;
+	}
+
+	private void reset() {
+		for (MessageDigest md : digests) {
+			md.reset();
+		}
+	}
+}
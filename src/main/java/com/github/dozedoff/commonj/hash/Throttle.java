@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of bytes and files per second that are read. Each limit is a token bucket that holds up to one
+ * second worth of tokens, so short bursts are allowed while the average stays within the limit. Callers that take
+ * more tokens than are available go into debt and wait until it is paid off, which keeps the cost to one
+ * synchronized update per call.
+ * <p>
+ * Limits can be changed at any time and apply to all threads sharing the {@link Throttle}. A limit of 0 disables it.
+ * </p>
+ */
+public class Throttle {
+	private final Bucket bytes = new Bucket();
+	private final Bucket files = new Bucket();
+
+	/**
+	 * Create a new {@link Throttle} without limits.
+	 */
+	public Throttle() {
+	}
+
+	/**
+	 * Create a new {@link Throttle} with the given limits.
+	 * 
+	 * @param bytesPerSecond
+	 *            maximum number of bytes read per second, 0 for no limit
+	 * @param filesPerSecond
+	 *            maximum number of files read per second, 0 for no limit
+	 */
+	public Throttle(long bytesPerSecond, long filesPerSecond) {
+		setBytesPerSecond(bytesPerSecond);
+		setFilesPerSecond(filesPerSecond);
+	}
+
+	/**
+	 * Set the maximum number of bytes read per second.
+	 * 
+	 * @param bytesPerSecond
+	 *            limit to set, 0 for no limit
+	 */
+	public void setBytesPerSecond(long bytesPerSecond) {
+		bytes.setRate(bytesPerSecond);
+	}
+
+	/**
+	 * Get the maximum number of bytes read per second.
+	 * 
+	 * @return the limit, 0 if there is no limit
+	 */
+	public long getBytesPerSecond() {
+		return bytes.rate;
+	}
+
+	/**
+	 * Set the maximum number of files read per second.
+	 * 
+	 * @param filesPerSecond
+	 *            limit to set, 0 for no limit
+	 */
+	public void setFilesPerSecond(long filesPerSecond) {
+		files.setRate(filesPerSecond);
+	}
+
+	/**
+	 * Get the maximum number of files read per second.
+	 * 
+	 * @return the limit, 0 if there is no limit
+	 */
+	public long getFilesPerSecond() {
+		return files.rate;
+	}
+
+	/**
+	 * Wait until the given number of bytes may be read.
+	 * 
+	 * @param count
+	 *            number of bytes that are read
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void acquireBytes(long count) throws InterruptedException {
+		bytes.acquire(count);
+	}
+
+	/**
+	 * Wait until a file may be read.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void acquireFile() throws InterruptedException {
+		files.acquire(1);
+	}
+
+	private static class Bucket {
+		private volatile long rate;
+		private double tokens;
+		private long lastRefill = System.nanoTime();
+
+		synchronized void setRate(long rate) {
+			if (rate < 0) {
+				throw new IllegalArgumentException("Rate must not be negative");
+			}
+
+			refill(System.nanoTime());
+			this.rate = rate;
+			tokens = Math.min(tokens, rate);
+		}
+
+		void acquire(long count) throws InterruptedException {
+			if (rate == 0 || count <= 0) {
+				return;
+			}
+
+			long waitNanos;
+
+			synchronized (this) {
+				long currentRate = rate;
+
+				if (currentRate == 0) {
+					return;
+				}
+
+				refill(System.nanoTime());
+				tokens -= count;
+				waitNanos = tokens < 0 ? (long) (-tokens / currentRate * TimeUnit.SECONDS.toNanos(1)) : 0;
+			}
+
+			if (waitNanos > 0) {
+				TimeUnit.NANOSECONDS.sleep(waitNanos);
+			}
+		}
+
+		private void refill(long now) {
+			long elapsed = now - lastRefill;
+			lastRefill = now;
+
+			if (rate > 0) {
+				tokens = Math.min(rate, tokens + (double) elapsed * rate / TimeUnit.SECONDS.toNanos(1));
+			}
+		}
+	}
+}
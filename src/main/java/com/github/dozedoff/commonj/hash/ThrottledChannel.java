@@ -0,0 +1,50 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel that waits on a {@link Throttle} for every read.
+ */
+class ThrottledChannel implements ReadableByteChannel {
+	private final ReadableByteChannel channel;
+	private final Throttle throttle;
+
+	ThrottledChannel(ReadableByteChannel channel, Throttle throttle) {
+		this.channel = channel;
+		this.throttle = throttle;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		int read = channel.read(dst);
+
+		if (read > 0) {
+			try {
+				throttle.acquireBytes(read);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while throttled");
+			}
+		}
+
+		return read;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Result of a {@link TreeHashMaker}: the root hash of a file, and the hashes of the chunks it was built from. Two
+ * results with the same chunk size can be compared chunk by chunk to find the parts of a file that differ.
+ */
+public final class TreeHash {
+	private final HashValue root;
+	private final List<HashValue> chunkHashes;
+	private final int chunkSize;
+	private final long length;
+
+	TreeHash(HashValue root, List<HashValue> chunkHashes, int chunkSize, long length) {
+		this.root = root;
+		this.chunkHashes = Collections.unmodifiableList(chunkHashes);
+		this.chunkSize = chunkSize;
+		this.length = length;
+	}
+
+	/**
+	 * Get the root hash of the tree, which covers the whole file.
+	 * 
+	 * @return the root hash
+	 */
+	public HashValue getRoot() {
+		return root;
+	}
+
+	/**
+	 * Get the hashes of the chunks in file order. An empty file has a single chunk.
+	 * 
+	 * @return an unmodifiable list of chunk hashes
+	 */
+	public List<HashValue> getChunkHashes() {
+		return chunkHashes;
+	}
+
+	/**
+	 * Get the size of the chunks the file was split into. The last chunk may be shorter.
+	 * 
+	 * @return the chunk size in bytes
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Get the length of the hashed file.
+	 * 
+	 * @return the length in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Find the chunks that differ between this and another tree hash. Chunks that only exist in one of them count as
+	 * different.
+	 * 
+	 * @param other
+	 *            tree hash to compare with
+	 * @return the indices of the chunks that differ, in ascending order
+	 * @throws IllegalArgumentException
+	 *             if the chunk sizes differ
+	 */
+	public List<Integer> findDifferentChunks(TreeHash other) {
+		if (chunkSize != other.chunkSize) {
+			throw new IllegalArgumentException(
+					"Cannot compare chunk size " + chunkSize + " with chunk size " + other.chunkSize);
+		}
+
+		List<Integer> different = new ArrayList<>();
+		int chunks = Math.max(chunkHashes.size(), other.chunkHashes.size());
+
+		for (int i = 0; i < chunks; i++) {
+			if (i >= chunkHashes.size() || i >= other.chunkHashes.size()
+					|| !Objects.equals(chunkHashes.get(i), other.chunkHashes.get(i))) {
+				different.add(i);
+			}
+		}
+
+		return different;
+	}
+
+	@Override
+	public String toString() {
+		return root.toString();
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hashes a file as a tree, so that a single large file can be hashed on several cores. The file is split into chunks
+ * of a fixed size, which are read with positional reads and hashed in parallel on a fork-join pool. The chunk hashes
+ * are then combined pairwise into a root hash. A chunk without a partner is moved up to the next level unchanged.
+ * <p>
+ * To keep chunk and node hashes apart, chunk hashes are calculated over a 0x00 byte followed by the data, node hashes
+ * over a 0x01 byte followed by the two child hashes. The root hash therefore differs from the plain hash of the file,
+ * and depends on the chunk size.
+ * </p>
+ * <p>
+ * Reads run through {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, so the pool can add threads while
+ * workers wait for the disk. This keeps the common pool usable for other tasks while a file is hashed on it.
+ * </p>
+ */
+public class TreeHashMaker {
+	/**
+	 * Default chunk size in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private static final byte LEAF_PREFIX = 0x00;
+	private static final byte NODE_PREFIX = 0x01;
+
+	private final String algorithm;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<MessageDigest> digests;
+	private final ThreadLocal<ByteBuffer> buffers;
+
+	/**
+	 * Create a new {@link TreeHashMaker} using SHA-256, the default chunk size and the common fork-join pool.
+	 */
+	public TreeHashMaker() {
+		this(HashMaker.DEFAULT_ALGORITHM, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Create a new {@link TreeHashMaker} using the common fork-join pool.
+	 * 
+	 * @param algorithm
+	 *            to use for chunk and node hashes, see {@link Digests}
+	 * @param chunkSize
+	 *            size of the chunks in bytes, must be greater than 0
+	 * @throws IllegalArgumentException
+	 *             if the algorithm is unknown or the chunk size is invalid
+	 */
+	public TreeHashMaker(String algorithm, int chunkSize) {
+		this(algorithm, chunkSize, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new {@link TreeHashMaker} that hashes chunks on the given pool.
+	 * 
+	 * @param algorithm
+	 *            to use for chunk and node hashes, see {@link Digests}
+	 * @param chunkSize
+	 *            size of the chunks in bytes, must be greater than 0
+	 * @param pool
+	 *            to hash the chunks on
+	 * @throws IllegalArgumentException
+	 *             if the algorithm is unknown or the chunk size is invalid
+	 */
+	public TreeHashMaker(String algorithm, int chunkSize, ForkJoinPool pool) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be greater than 0");
+		}
+
+		try {
+			Digests.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unknown algorithm " + algorithm, e);
+		}
+
+		this.algorithm = algorithm;
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+		this.digests = ThreadLocal.withInitial(this::createDigest);
+		this.buffers = ThreadLocal
+				.withInitial(() -> ByteBuffer.allocateDirect(Math.min(chunkSize, HashMaker.DEFAULT_BUFFER_SIZE)));
+	}
+
+	private MessageDigest createDigest() {
+		try {
+			return Digests.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Algorithm " + algorithm + " is no longer available", e);
+		}
+	}
+
+	/**
+	 * Get the chunk size used by this {@link TreeHashMaker}.
+	 * 
+	 * @return the chunk size in bytes
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Calculate the tree hash of a file.
+	 * 
+	 * @param file
+	 *            to hash
+	 * @return the root and chunk hashes of the file
+	 * @throws IOException
+	 *             if there is an error reading the file
+	 */
+	public TreeHash hashFile(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long chunkCount = Math.max(1, (size + chunkSize - 1) / chunkSize);
+
+			if (chunkCount > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("File " + file + " has too many chunks for chunk size " + chunkSize);
+			}
+
+			HashValue[] chunkHashes = new HashValue[(int) chunkCount];
+
+			try {
+				pool.invoke(new ChunkTask(channel, size, chunkHashes, 0, chunkHashes.length));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			return new TreeHash(combine(chunkHashes), Arrays.asList(chunkHashes), chunkSize, size);
+		}
+	}
+
+	/**
+	 * Hash the file again and compare it with an earlier tree hash, to find out which chunks have changed.
+	 * 
+	 * @param file
+	 *            to check
+	 * @param expected
+	 *            tree hash the file should have, must use the same chunk size
+	 * @return the indices of the chunks that differ, empty if the file matches
+	 * @throws IOException
+	 *             if there is an error reading the file
+	 * @throws IllegalArgumentException
+	 *             if the expected tree hash uses a different chunk size
+	 */
+	public List<Integer> verify(Path file, TreeHash expected) throws IOException {
+		if (expected.getChunkSize() != chunkSize) {
+			throw new IllegalArgumentException(
+					"Expected hash uses chunk size " + expected.getChunkSize() + ", but this uses " + chunkSize);
+		}
+
+		return hashFile(file).findDifferentChunks(expected);
+	}
+
+	private HashValue combine(HashValue[] chunkHashes) {
+		List<HashValue> level = Arrays.asList(chunkHashes);
+		MessageDigest digest = digests.get();
+
+		while (level.size() > 1) {
+			List<HashValue> next = new ArrayList<>((level.size() + 1) / 2);
+
+			for (int i = 0; i < level.size(); i += 2) {
+				if (i + 1 == level.size()) {
+					next.add(level.get(i));
+				} else {
+					digest.update(NODE_PREFIX);
+					digest.update(level.get(i).getBytes());
+					digest.update(level.get(i + 1).getBytes());
+					next.add(HashValue.wrap(digest.digest()));
+				}
+			}
+
+			level = next;
+		}
+
+		return level.get(0);
+	}
+
+	private HashValue hashChunk(FileChannel channel, long size, int index) throws IOException {
+		MessageDigest digest = digests.get();
+		ByteBuffer buffer = buffers.get();
+		long position = (long) index * chunkSize;
+		long end = Math.min(size, position + chunkSize);
+
+		digest.update(LEAF_PREFIX);
+
+		try {
+			while (position < end) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), end - position));
+				int read = new ChunkRead(channel, buffer, position).call();
+
+				if (read == -1) {
+					throw new IOException("Unexpected end of file at " + position);
+				}
+
+				position += read;
+				buffer.flip();
+				digest.update(buffer);
+			}
+		} catch (IOException e) {
+			digest.reset();
+			throw e;
+		}
+
+		return HashValue.wrap(digest.digest());
+	}
+
+	/**
+	 * A positional read that the pool treats as blocking.
+	 */
+	private static class ChunkRead implements ForkJoinPool.ManagedBlocker {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final long position;
+		private IOException error;
+		private int read;
+		private boolean done;
+
+		ChunkRead(FileChannel channel, ByteBuffer buffer, long position) {
+			this.channel = channel;
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+		@Override
+		public boolean block() {
+			try {
+				read = channel.read(buffer, position);
+			} catch (IOException e) {
+				error = e;
+			}
+
+			done = true;
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+
+		int call() throws IOException {
+			try {
+				ForkJoinPool.managedBlock(this);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading at " + position);
+			}
+
+			if (error != null) {
+				throw error;
+			}
+
+			return read;
+		}
+	}
+
+	/**
+	 * Hashes a range of chunks, splitting it in half until a single chunk is left.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final transient FileChannel channel;
+		private final long size;
+		private final HashValue[] chunkHashes;
+		private final int start;
+		private final int end;
+
+		ChunkTask(FileChannel channel, long size, HashValue[] chunkHashes, int start, int end) {
+			this.channel = channel;
+			this.size = size;
+			this.chunkHashes = chunkHashes;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start == 1) {
+				try {
+					chunkHashes[start] = hashChunk(channel, size, start);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				return;
+			}
+
+			int middle = (start + end) >>> 1;
+			invokeAll(new ChunkTask(channel, size, chunkHashes, start, middle),
+					new ChunkTask(channel, size, chunkHashes, middle, end));
+		}
+	}
+}
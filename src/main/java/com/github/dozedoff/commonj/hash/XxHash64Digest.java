@@ -0,0 +1,188 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * Streaming implementation of the 64 bit xxHash (XXH64) with a seed of 0, exposed as a {@link MessageDigest}. The
+ * digest is the canonical (big endian) representation of the hash. This is not a cryptographic hash, it is meant for
+ * fast comparisons.
+ * 
+ * Based on the specification at https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md
+ */
+class XxHash64Digest extends MessageDigest implements Cloneable {
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE_SIZE = 32;
+	private static final int DIGEST_LENGTH = 8;
+
+	private long v1, v2, v3, v4;
+	private long totalLength;
+	private byte[] stripe = new byte[STRIPE_SIZE];
+	private int stripeLength;
+
+	/**
+	 * Create a new XXH64 digest.
+	 * 
+	 * @param algorithm
+	 *            name of the digest
+	 */
+	XxHash64Digest(String algorithm) {
+		super(algorithm);
+		engineReset();
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		stripe[stripeLength++] = input;
+		totalLength++;
+
+		if (stripeLength == STRIPE_SIZE) {
+			processStripe(stripe, 0);
+			stripeLength = 0;
+		}
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		totalLength += len;
+		int end = offset + len;
+
+		if (stripeLength > 0) {
+			int fill = Math.min(STRIPE_SIZE - stripeLength, len);
+			System.arraycopy(input, offset, stripe, stripeLength, fill);
+			stripeLength += fill;
+			offset += fill;
+
+			if (stripeLength < STRIPE_SIZE) {
+				return;
+			}
+
+			processStripe(stripe, 0);
+			stripeLength = 0;
+		}
+
+		for (; offset + STRIPE_SIZE <= end; offset += STRIPE_SIZE) {
+			processStripe(input, offset);
+		}
+
+		stripeLength = end - offset;
+		System.arraycopy(input, offset, stripe, 0, stripeLength);
+	}
+
+	private void processStripe(byte[] input, int offset) {
+		v1 = round(v1, readLong(input, offset));
+		v2 = round(v2, readLong(input, offset + 8));
+		v3 = round(v3, readLong(input, offset + 16));
+		v4 = round(v4, readLong(input, offset + 24));
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return DIGEST_LENGTH;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long hash = finish();
+		engineReset();
+
+		byte[] digest = new byte[DIGEST_LENGTH];
+
+		for (int i = DIGEST_LENGTH - 1; i >= 0; i--) {
+			digest[i] = (byte) hash;
+			hash >>>= Byte.SIZE;
+		}
+
+		return digest;
+	}
+
+	private long finish() {
+		long hash;
+
+		if (totalLength >= STRIPE_SIZE) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		} else {
+			hash = v3 + PRIME64_5;
+		}
+
+		hash += totalLength;
+
+		int offset = 0;
+
+		for (; offset + 8 <= stripeLength; offset += 8) {
+			hash ^= round(0, readLong(stripe, offset));
+			hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+		}
+
+		if (offset + 4 <= stripeLength) {
+			hash ^= (readInt(stripe, offset) & 0xFFFFFFFFL) * PRIME64_1;
+			hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+			offset += 4;
+		}
+
+		for (; offset < stripeLength; offset++) {
+			hash ^= (stripe[offset] & 0xFFL) * PRIME64_5;
+			hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME64_2;
+		hash ^= hash >>> 29;
+		hash *= PRIME64_3;
+		hash ^= hash >>> 32;
+
+		return hash;
+	}
+
+	@Override
+	protected void engineReset() {
+		v1 = PRIME64_1 + PRIME64_2;
+		v2 = PRIME64_2;
+		v3 = 0;
+		v4 = -PRIME64_1;
+		totalLength = 0;
+		stripeLength = 0;
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		XxHash64Digest copy = (XxHash64Digest) super.clone();
+		copy.stripe = stripe.clone();
+		return copy;
+	}
+
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME64_2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		return accumulator * PRIME64_1;
+	}
+
+	private static long mergeRound(long accumulator, long value) {
+		accumulator ^= round(0, value);
+		return accumulator * PRIME64_1 + PRIME64_4;
+	}
+
+	private static long readLong(byte[] data, int offset) {
+		return (data[offset] & 0xFFL) | (data[offset + 1] & 0xFFL) << 8 | (data[offset + 2] & 0xFFL) << 16
+				| (data[offset + 3] & 0xFFL) << 24 | (data[offset + 4] & 0xFFL) << 32 | (data[offset + 5] & 0xFFL) << 40
+				| (data[offset + 6] & 0xFFL) << 48 | (data[offset + 7] & 0xFFL) << 56;
+	}
+
+	private static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+				| (data[offset + 3] & 0xFF) << 24;
+	}
+}
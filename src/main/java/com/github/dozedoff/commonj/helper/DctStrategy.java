@@ -0,0 +1,28 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.helper;
+
+/**
+ * Algorithms {@link TransformHelper} can use to calculate the DCT. All of them give the same result except for
+ * rounding.
+ */
+public enum DctStrategy {
+	/**
+	 * Directly from the definition, O(N^4). Very slow, used as reference.
+	 */
+	NAIVE,
+
+	/**
+	 * Transforms columns and rows separately with a precomputed cosine table, O(N^3).
+	 */
+	SEPARABLE,
+
+	/**
+	 * Transforms columns and rows separately with Lee's fast DCT, O(N^2 log N). Only for matrix sizes that are a power
+	 * of two.
+	 */
+	FAST
+}
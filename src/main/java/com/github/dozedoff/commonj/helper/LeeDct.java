@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.helper;
+
+/**
+ * Unscaled one dimensional DCT-II using Lee's recursive algorithm, which splits a transform of length N into two of
+ * length N/2. Calculates X[k] = sum(x[n] * cos(PI * (n + 0.5) * k / N)), the same as the cosine table of
+ * {@link TransformHelper}. The 1 / (2 * cos) factors of every level are precomputed.
+ */
+class LeeDct {
+	private final int length;
+
+	/**
+	 * Factors for a level with half length h are stored from index h - 1 to 2h - 2.
+	 */
+	private final double[] factors;
+
+	/**
+	 * Create a transform for vectors of the given length.
+	 * 
+	 * @param length
+	 *            of the vectors, must be a power of two
+	 * @throws IllegalArgumentException
+	 *             if the length is not a power of two
+	 */
+	LeeDct(int length) {
+		if (length <= 0 || Integer.bitCount(length) != 1) {
+			throw new IllegalArgumentException("Length must be a power of two, but was " + length);
+		}
+
+		this.length = length;
+		this.factors = new double[Math.max(1, length - 1)];
+
+		for (int len = length; len >= 2; len /= 2) {
+			int halfLen = len / 2;
+
+			for (int i = 0; i < halfLen; i++) {
+				factors[halfLen - 1 + i] = 1 / (Math.cos((i + 0.5) * Math.PI / len) * 2);
+			}
+		}
+	}
+
+	/**
+	 * Transform the vector in place.
+	 * 
+	 * @param vector
+	 *            to transform
+	 * @param temp
+	 *            work space of the same length
+	 */
+	void transform(double[] vector, double[] temp) {
+		transform(vector, 0, length, temp);
+	}
+
+	private void transform(double[] vector, int off, int len, double[] temp) {
+		if (len == 1) {
+			return;
+		}
+
+		int halfLen = len / 2;
+		int factorOffset = halfLen - 1;
+
+		for (int i = 0; i < halfLen; i++) {
+			double x = vector[off + i];
+			double y = vector[off + len - 1 - i];
+			temp[off + i] = x + y;
+			temp[off + i + halfLen] = (x - y) * factors[factorOffset + i];
+		}
+
+		transform(temp, off, halfLen, vector);
+		transform(temp, off + halfLen, halfLen, vector);
+
+		for (int i = 0; i < halfLen - 1; i++) {
+			vector[off + i * 2] = temp[off + i];
+			vector[off + i * 2 + 1] = temp[off + i + halfLen] + temp[off + i + halfLen + 1];
+		}
+
+		vector[off + len - 2] = temp[off + halfLen - 1];
+		vector[off + len - 1] = temp[off + len - 1];
+	}
+}
@@ -6,26 +6,79 @@
 package com.github.dozedoff.commonj.helper;
 
 /**
- * Helper class for performing DCT transformations on images.
+ * Helper class for performing DCT transformations on images. The DCT is split into a pass over the columns and a pass
+ * over the rows, using either a precomputed cosine table, O(N^3), or a fast DCT, O(N^2 log N). See
+ * {@link DctStrategy}.
+ * <p>
+ * With verification enabled, every result is checked against the transform calculated from the definition. This is
+ * slow and meant for testing a strategy on real data.
+ * </p>
  * 
  * @author Nicholas Wright
  *
  */
 public class TransformHelper {
+	/**
+	 * Maximum difference per value between a strategy and the reference, before verification fails.
+	 */
+	public static final double VERIFY_EPSILON = 1e-6;
+
 	private int matrixSize;
 	private double[] dctCoefficients;
+	private double[] cosTable;
+	private final DctStrategy strategy;
+	private final LeeDct leeDct;
+	private volatile boolean verify;
+	private final ThreadLocal<Workspace> workspace;
 
 	/**
-	 * Create a new {@link TransformHelper} for a given matrix size.
+	 * Create a new {@link TransformHelper} for a given matrix size, using {@link DctStrategy#SEPARABLE}.
 	 * 
 	 * @param matrixSize
 	 *            size of the square matrix
 	 */
 	public TransformHelper(int matrixSize) {
+		this(matrixSize, DctStrategy.SEPARABLE);
+	}
+
+	/**
+	 * Create a new {@link TransformHelper} for a given matrix size and strategy.
+	 * 
+	 * @param matrixSize
+	 *            size of the square matrix
+	 * @param strategy
+	 *            to calculate the DCT with
+	 * @throws IllegalArgumentException
+	 *             if {@link DctStrategy#FAST} is used with a size that is not a power of two
+	 */
+	public TransformHelper(int matrixSize, DctStrategy strategy) {
 		this.matrixSize = matrixSize;
+		this.strategy = strategy;
+		this.leeDct = strategy == DctStrategy.FAST ? new LeeDct(matrixSize) : null;
+		this.workspace = ThreadLocal.withInitial(() -> new Workspace(matrixSize));
 		initCoefficients();
 	}
 
+	/**
+	 * Get the strategy used to calculate the DCT.
+	 * 
+	 * @return the strategy
+	 */
+	public DctStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Check every result against the reference transform. If a value differs by more than {@link #VERIFY_EPSILON},
+	 * {@link #transformDCT(double[][])} throws an {@link IllegalStateException}.
+	 * 
+	 * @param verify
+	 *            true to enable verification
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
 	private void initCoefficients() {
 		dctCoefficients = new double[matrixSize];
 
@@ -34,35 +87,198 @@ public class TransformHelper {
 		}
 
 		dctCoefficients[0] = 1 / Math.sqrt(2.0);
+
+		int N = matrixSize;
+		cosTable = new double[N * N];
+
+		// same expression as in transformDCTNaive, so the values are identical
+		for (int u = 0; u < N; u++) {
+			for (int i = 0; i < N; i++) {
+				cosTable[u * N + i] = Math.cos(((2 * i + 1) / (2.0 * N)) * u * Math.PI);
+			}
+		}
 	}
 
 	/**
-	 * Perform the DCT calculation on the provided matrix. Based on
-	 * http://stackoverflow.com/questions/4240490/problems-with-dct-and-idct-algorithm-in-java
+	 * Perform the DCT calculation on the provided matrix, using the strategy of this helper. The results of all
+	 * strategies match except for rounding, the difference per value is below 1e-9 for 8 bit input.
 	 * 
 	 * @param matrix
 	 *            to use for the calculation
 	 * @return a matrix containing the calculated DCT
+	 * @throws IllegalStateException
+	 *             if verification is enabled and the result differs from the reference
 	 */
 	public double[][] transformDCT(double[][] matrix) {
+		double[] result = new double[matrixSize * matrixSize];
+		transformDCT(flatten(matrix), result);
+		return unflatten(result);
+	}
+
+	/**
+	 * Perform the DCT calculation on a matrix stored in row-major order, element [x][y] at index x * size + y. Gives
+	 * the same values as {@link #transformDCT(double[][])}, but uses a work space kept per thread, so nothing is
+	 * allocated once a thread has made its first call.
+	 * 
+	 * @param matrix
+	 *            to use for the calculation, size * size values
+	 * @param result
+	 *            receives the calculated DCT in the same layout, must not be the matrix array
+	 * @throws IllegalStateException
+	 *             if verification is enabled and the result differs from the reference
+	 */
+	public void transformDCT(double[] matrix, double[] result) {
+		switch (strategy) {
+		case NAIVE:
+			transformDCTNaive(matrix, result);
+			break;
+		case FAST:
+			transformDCTFast(matrix, result, workspace.get());
+			break;
+		default:
+			transformDCTSeparable(matrix, result, workspace.get());
+			break;
+		}
+
+		if (verify && strategy != DctStrategy.NAIVE) {
+			verify(matrix, result);
+		}
+	}
+
+	private void verify(double[] matrix, double[] result) {
+		double[] reference = new double[result.length];
+		transformDCTNaive(matrix, reference);
+
+		for (int u = 0; u < matrixSize; u++) {
+			for (int v = 0; v < matrixSize; v++) {
+				int index = u * matrixSize + v;
+				double difference = Math.abs(reference[index] - result[index]);
+
+				if (difference > VERIFY_EPSILON) {
+					throw new IllegalStateException("DCT " + strategy + " differs from reference at " + u + "x" + v
+							+ " by " + difference);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transform each row and then each column of the result with the fast DCT, and apply the scaling factors.
+	 */
+	void transformDCTFast(double[] matrix, double[] F, Workspace work) {
+		int N = matrixSize;
+		double[] vector = work.vector;
+		double[] temp = work.temp;
+
+		for (int i = 0; i < N; i++) {
+			System.arraycopy(matrix, i * N, vector, 0, N);
+			leeDct.transform(vector, temp);
+			System.arraycopy(vector, 0, F, i * N, N);
+		}
+
+		for (int v = 0; v < N; v++) {
+			for (int i = 0; i < N; i++) {
+				vector[i] = F[i * N + v];
+			}
+
+			leeDct.transform(vector, temp);
+
+			for (int u = 0; u < N; u++) {
+				F[u * N + v] = vector[u] * ((dctCoefficients[u] * dctCoefficients[v]) / 4.0);
+			}
+		}
+	}
+
+	/**
+	 * Transform each column and then each row of the result, using the precomputed cosine table.
+	 */
+	void transformDCTSeparable(double[] matrix, double[] F, Workspace work) {
+		int N = matrixSize;
+		double[] partial = work.partial;
+
+		for (int u = 0; u < N; u++) {
+			int uOffset = u * N;
+
+			for (int j = 0; j < N; j++) {
+				double sum = 0.0;
+
+				for (int i = 0; i < N; i++) {
+					sum += cosTable[uOffset + i] * matrix[i * N + j];
+				}
+
+				partial[uOffset + j] = sum;
+			}
+		}
+
+		for (int u = 0; u < N; u++) {
+			int rowOffset = u * N;
+
+			for (int v = 0; v < N; v++) {
+				int vOffset = v * N;
+				double sum = 0.0;
+
+				for (int j = 0; j < N; j++) {
+					sum += cosTable[vOffset + j] * partial[rowOffset + j];
+				}
+
+				F[rowOffset + v] = sum * ((dctCoefficients[u] * dctCoefficients[v]) / 4.0);
+			}
+		}
+	}
+
+	/**
+	 * Perform the DCT calculation on the provided matrix, directly from the definition. Slow, kept as reference for
+	 * {@link #transformDCT(double[][])}. Based on
+	 * http://stackoverflow.com/questions/4240490/problems-with-dct-and-idct-algorithm-in-java
+	 * 
+	 * @param matrix
+	 *            to use for the calculation
+	 * @return a matrix containing the calculated DCT
+	 */
+	double[][] transformDCTNaive(double[][] matrix) {
+		double[] result = new double[matrixSize * matrixSize];
+		transformDCTNaive(flatten(matrix), result);
+		return unflatten(result);
+	}
+
+	private void transformDCTNaive(double[] matrix, double[] F) {
 		int N = matrixSize;
 
-		double[][] F = new double[N][N];
 		for (int u = 0; u < N; u++) {
 			for (int v = 0; v < N; v++) {
 				double sum = 0.0;
 				for (int i = 0; i < N; i++) {
 					for (int j = 0; j < N; j++) {
 						sum += Math.cos(((2 * i + 1) / (2.0 * N)) * u * Math.PI) * Math.cos(((2 * j + 1) / (2.0 * N)) * v * Math.PI)
-								* (matrix[i][j]);
+								* (matrix[i * N + j]);
 					}
 				}
 				sum *= ((dctCoefficients[u] * dctCoefficients[v]) / 4.0);
-				F[u][v] = sum;
+				F[u * N + v] = sum;
 			}
 		}
+	}
+
+	private double[] flatten(double[][] matrix) {
+		int N = matrixSize;
+		double[] flat = new double[N * N];
+
+		for (int i = 0; i < N; i++) {
+			System.arraycopy(matrix[i], 0, flat, i * N, N);
+		}
 
-		return F;
+		return flat;
+	}
+
+	private double[][] unflatten(double[] flat) {
+		int N = matrixSize;
+		double[][] matrix = new double[N][N];
+
+		for (int i = 0; i < N; i++) {
+			System.arraycopy(flat, i * N, matrix[i], 0, N);
+		}
+
+		return matrix;
 	}
 
 	/**
@@ -89,4 +305,46 @@ public class TransformHelper {
 
 		return average;
 	}
+
+	/**
+	 * Calculate the average from the submatrix in the top left corner of a matrix stored in row-major order. Term 0x0
+	 * (DC value) is not included in the average.
+	 * 
+	 * @param dctMap
+	 *            matrix containing DCT values, element [x][y] at index x * matrixSize + y
+	 * @param matrixSize
+	 *            the size of the whole matrix
+	 * @param submatrixSize
+	 *            the size of the submatrix to use
+	 * @return the average of the matrix, excluding term 0x0
+	 */
+	public static double dctAverage(double[] dctMap, int matrixSize, int submatrixSize) {
+		double sum = 0;
+
+		for (int x = 0; x < submatrixSize; x++) {
+			for (int y = 0; y < submatrixSize; y++) {
+				sum += dctMap[x * matrixSize + y];
+			}
+		}
+
+		sum -= dctMap[0];
+		double average = sum / (double) ((submatrixSize * submatrixSize) - 1);
+
+		return average;
+	}
+
+	/**
+	 * Intermediate buffers for one thread.
+	 */
+	static final class Workspace {
+		final double[] partial;
+		final double[] vector;
+		final double[] temp;
+
+		Workspace(int matrixSize) {
+			partial = new double[matrixSize * matrixSize];
+			vector = new double[matrixSize];
+			temp = new double[matrixSize];
+		}
+	}
 }
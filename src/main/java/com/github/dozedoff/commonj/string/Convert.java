@@ -37,6 +37,41 @@ public class Convert {
 		return new String(hexChars);
 	}
 
+	/**
+	 * Converts a Hex string, as created by {@link #byteToHex(byte...)}, back to byte values. Upper and lower case
+	 * digits are accepted.
+	 * 
+	 * @param hex
+	 *            string to convert, must have an even number of hex digits
+	 * @return the byte values, or null if the string is null
+	 * @throws IllegalArgumentException
+	 *             if the string has an odd length or contains non hex characters
+	 */
+	public static byte[] hexToByte(String hex) {
+		if (hex == null) {
+			return null;
+		}
+
+		if (hex.length() % 2 != 0) {
+			throw new IllegalArgumentException("Hex string must have an even length: " + hex);
+		}
+
+		byte[] bytes = new byte[hex.length() / 2];
+
+		for (int j = 0; j < bytes.length; j++) {
+			int high = Character.digit(hex.charAt(j * 2), 16);
+			int low = Character.digit(hex.charAt(j * 2 + 1), 16);
+
+			if (high == -1 || low == -1) {
+				throw new IllegalArgumentException("Not a valid hex string: " + hex);
+			}
+
+			bytes[j] = (byte) ((high << 4) | low);
+		}
+
+		return bytes;
+	}
+
 	/**
 	 * Try to convert the given {@link String} to an Int. If the conversion
 	 * fails, the default value will be returned instead.
@@ -5,10 +5,16 @@
  */
 package com.github.dozedoff.commonj.util;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorConvertOp;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -77,6 +83,67 @@ public class ImageUtil {
 		return resizedImage;
 	}
 
+	/**
+	 * Resize a image into an existing image, using Java AWT. The target is cleared first, so the result is the same as
+	 * from {@link #resizeImage(BufferedImage, int, int)} for a target of the same type.
+	 * 
+	 * @param image
+	 *            to resize
+	 * @param target
+	 *            to draw the resized image into, the dimensions of the target are used
+	 * @return the target image
+	 */
+	public static BufferedImage resizeImage(BufferedImage image, BufferedImage target) {
+		int width = target.getWidth();
+		int height = target.getHeight();
+		Graphics2D g = target.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, width, height);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return target;
+	}
+
+	/**
+	 * Create a image suitable as target for {@link #resizeImage(BufferedImage, BufferedImage)}.
+	 * 
+	 * @param width
+	 *            of the image
+	 * @param height
+	 *            of the image
+	 * @return a new image of the type used for resizing
+	 */
+	public static BufferedImage createResizeTarget(int width, int height) {
+		return new BufferedImage(width, height, resizeType);
+	}
+
+	/**
+	 * Copy the pixel values of the image into an existing array, in row-major order with the value for pixel x, y at
+	 * index x * height + y. This is the same layout as {@link #toDoubleMatrix(BufferedImage)}. The method assumes
+	 * that the image is gray-scale, non-gray-scale images will result in undefined behaviour.
+	 * 
+	 * @param grayscaleImage
+	 *            gray scale image
+	 * @param values
+	 *            to store the pixel values in, width * height values
+	 * @return the values array
+	 */
+	public static double[] toDoubleArray(BufferedImage grayscaleImage, double[] values) {
+		int width = grayscaleImage.getWidth();
+		int height = grayscaleImage.getHeight();
+
+		for (int x = 0; x < width; x++) {
+			int offset = x * height;
+
+			for (int y = 0; y < height; y++) {
+				values[offset + y] = getBlue(grayscaleImage, x, y);
+			}
+		}
+
+		return values;
+	}
+
 	/**
 	 * Copy the pixel values of the image into a matrix. The method assumes that
 	 * the image is gray-scale, non-gray-scale images will result in undefined
@@ -104,6 +171,156 @@ public class ImageUtil {
 		return (img.getRGB(x, y)) & 0xff;
 	}
 
+	/**
+	 * Calculate the luminance of each pixel in one pass, without converting the image first. Uses the Rec. 601 luma
+	 * weights 0.299 R + 0.587 G + 0.114 B on the stored values, alpha is ignored. The values are stored in the same
+	 * layout as {@link #toDoubleArray(BufferedImage, double[])}, pixel x, y at index x * height + y.
+	 * <p>
+	 * Images of type {@link BufferedImage#TYPE_INT_RGB}, {@link BufferedImage#TYPE_INT_ARGB},
+	 * {@link BufferedImage#TYPE_3BYTE_BGR} and {@link BufferedImage#TYPE_BYTE_GRAY} are read directly from the backing
+	 * array, for gray images the stored value is used as is. All other types go through
+	 * {@link BufferedImage#getRGB(int, int)}. The result is close to, but not the same as,
+	 * {@link #toGrayscale(BufferedImage)}, which also converts to a linear gray color space.
+	 * </p>
+	 * 
+	 * @param image
+	 *            to read
+	 * @param values
+	 *            to store the luminance in, width * height values
+	 * @return the values array
+	 */
+	public static double[] toLuminance(BufferedImage image, double[] values) {
+		int height = image.getHeight();
+
+		for (int y = 0; y < height; y++) {
+			luminanceRow(image, y, values, y, height, false);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Scale the image to the given size by area averaging and calculate the luminance, in a single pass over the
+	 * source pixels. Each target pixel is the average of the source area it covers, with partly covered source pixels
+	 * weighted by their coverage. Luminance is calculated as in {@link #toLuminance(BufferedImage, double[])}, reading
+	 * the same image types directly, but transparent pixels are blended onto black. The values are stored with target
+	 * pixel x, y at index x * height + y.
+	 * <p>
+	 * This replaces {@link #resizeImage(BufferedImage, int, int)} followed by a gray conversion, without the
+	 * intermediate images. The scaling is not the same as the one done by Java AWT, so the values differ slightly. Use
+	 * a {@link LuminanceScaler} to scale several images without allocating buffers for each one.
+	 * </p>
+	 * 
+	 * @param image
+	 *            to scale
+	 * @param width
+	 *            of the scaled image
+	 * @param height
+	 *            of the scaled image
+	 * @param values
+	 *            to store the luminance in, width * height values
+	 * @return the values array
+	 */
+	public static double[] toLuminanceScaled(BufferedImage image, int width, int height, double[] values) {
+		return new LuminanceScaler(width, height).scale(image, values);
+	}
+
+	private static double luminance(int r, int g, int b) {
+		return 0.299 * r + 0.587 * g + 0.114 * b;
+	}
+
+	private static double luminance(int pixel, boolean blend) {
+		double luminance = luminance((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff);
+
+		if (blend) {
+			luminance *= (pixel >>> 24) / 255.0;
+		}
+
+		return luminance;
+	}
+
+	/**
+	 * Calculate the luminance of one row, reading the backing array directly for the supported types. The value for
+	 * pixel x is stored at offset + x * step.
+	 */
+	static void luminanceRow(BufferedImage image, int y, double[] row, int offset, int step, boolean blend) {
+		WritableRaster raster = image.getRaster();
+
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_RGB:
+			luminancePacked(raster, y, row, offset, step, false);
+			break;
+		case BufferedImage.TYPE_INT_ARGB:
+			luminancePacked(raster, y, row, offset, step, blend);
+			break;
+		case BufferedImage.TYPE_3BYTE_BGR:
+			luminanceBgr(raster, y, row, offset, step);
+			break;
+		case BufferedImage.TYPE_BYTE_GRAY:
+			luminanceGray(raster, y, row, offset, step);
+			break;
+		default:
+			luminanceGeneric(image, y, row, offset, step, blend && image.getColorModel().hasAlpha());
+			break;
+		}
+	}
+
+	private static void luminancePacked(WritableRaster raster, int y, double[] row, int offset, int step, boolean blend) {
+		int width = raster.getWidth();
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+		int[] data = buffer.getData();
+		int stride = sampleModel.getScanlineStride();
+		int index = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride - raster.getSampleModelTranslateX();
+
+		for (int x = 0; x < width; x++) {
+			row[offset + x * step] = luminance(data[index + x], blend);
+		}
+	}
+
+	private static void luminanceBgr(WritableRaster raster, int y, double[] row, int offset, int step) {
+		int width = raster.getWidth();
+		ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+		DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+		byte[] data = buffer.getData();
+		int stride = sampleModel.getScanlineStride();
+		int pixelStride = sampleModel.getPixelStride();
+		int[] bandOffsets = sampleModel.getBandOffsets();
+		int index = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride - raster.getSampleModelTranslateX() * pixelStride;
+		int red = bandOffsets[0];
+		int green = bandOffsets[1];
+		int blue = bandOffsets[2];
+
+		for (int x = 0; x < width; x++) {
+			row[offset + x * step] = luminance(data[index + red] & 0xff, data[index + green] & 0xff, data[index + blue] & 0xff);
+			index += pixelStride;
+		}
+	}
+
+	private static void luminanceGray(WritableRaster raster, int y, double[] row, int offset, int step) {
+		int width = raster.getWidth();
+		ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+		DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+		byte[] data = buffer.getData();
+		int stride = sampleModel.getScanlineStride();
+		int pixelStride = sampleModel.getPixelStride();
+		int index = buffer.getOffset() + (y - raster.getSampleModelTranslateY()) * stride - raster.getSampleModelTranslateX() * pixelStride
+				+ sampleModel.getBandOffsets()[0];
+
+		for (int x = 0; x < width; x++) {
+			row[offset + x * step] = data[index] & 0xff;
+			index += pixelStride;
+		}
+	}
+
+	private static void luminanceGeneric(BufferedImage image, int y, double[] row, int offset, int step, boolean blend) {
+		int width = image.getWidth();
+
+		for (int x = 0; x < width; x++) {
+			row[offset + x * step] = luminance(image.getRGB(x, y), blend);
+		}
+	}
+
 	/**
 	 * Read a image from a {@link InputStream}. This is a trivial wrapper around
 	 * {@link ImageIO#read(InputStream).
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Scales images to a fixed size by area averaging and calculates the luminance, see
+ * {@link ImageUtil#toLuminanceScaled(BufferedImage, int, int, double[])}. The weights and row buffers are kept
+ * between calls, so scaling images of the same size as the previous one does not allocate memory. The weights are
+ * recalculated when the size of the source image changes.
+ * <p>
+ * Instances are not thread safe.
+ * </p>
+ */
+public class LuminanceScaler {
+	private final int width;
+	private final int height;
+	private final double[] scaledRow;
+	private double[] sourceRow = new double[0];
+	private AreaWeights columns;
+	private AreaWeights rows;
+
+	/**
+	 * Create a new scaler for the given target size.
+	 *
+	 * @param width
+	 *            of the scaled image
+	 * @param height
+	 *            of the scaled image
+	 */
+	public LuminanceScaler(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.scaledRow = new double[width];
+	}
+
+	/**
+	 * Scale the image and calculate the luminance. The values are stored with target pixel x, y at index x * height
+	 * + y.
+	 *
+	 * @param image
+	 *            to scale
+	 * @param values
+	 *            to store the luminance in, width * height values
+	 * @return the values array
+	 */
+	public double[] scale(BufferedImage image, double[] values) {
+		int sourceWidth = image.getWidth();
+		int sourceHeight = image.getHeight();
+
+		if (columns == null || columns.sourceSize != sourceWidth) {
+			columns = new AreaWeights(sourceWidth, width);
+		}
+
+		if (rows == null || rows.sourceSize != sourceHeight) {
+			rows = new AreaWeights(sourceHeight, height);
+		}
+
+		if (sourceRow.length < sourceWidth) {
+			sourceRow = new double[sourceWidth];
+		}
+
+		int rowWeight = 0;
+		Arrays.fill(values, 0, width * height, 0);
+
+		for (int sy = 0; sy < sourceHeight; sy++) {
+			ImageUtil.luminanceRow(image, sy, sourceRow, 0, 1, true);
+			Arrays.fill(scaledRow, 0);
+
+			for (int i = 0; i < columns.count; i++) {
+				scaledRow[columns.target[i]] += sourceRow[columns.source[i]] * columns.weight[i];
+			}
+
+			for (; rowWeight < rows.count && rows.source[rowWeight] == sy; rowWeight++) {
+				int y = rows.target[rowWeight];
+				double weight = rows.weight[rowWeight];
+
+				for (int x = 0; x < width; x++) {
+					values[x * height + y] += scaledRow[x] * weight;
+				}
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Overlap of source and target pixels along one axis, ordered by source pixel. The weights for one target pixel
+	 * add up to 1.
+	 */
+	private static final class AreaWeights {
+		final int sourceSize;
+		final int[] source;
+		final int[] target;
+		final double[] weight;
+		int count;
+
+		AreaWeights(int sourceSize, int targetSize) {
+			this.sourceSize = sourceSize;
+			source = new int[sourceSize + targetSize];
+			target = new int[sourceSize + targetSize];
+			weight = new double[sourceSize + targetSize];
+
+			// a source pixel is targetSize units long, a target pixel sourceSize units
+			long position = 0;
+			int i = 0;
+			int j = 0;
+
+			while (i < sourceSize && j < targetSize) {
+				long sourceEnd = (i + 1L) * targetSize;
+				long targetEnd = (j + 1L) * sourceSize;
+				long end = Math.min(sourceEnd, targetEnd);
+
+				source[count] = i;
+				target[count] = j;
+				weight[count] = (end - position) / (double) sourceSize;
+				count++;
+				position = end;
+
+				if (end == sourceEnd) {
+					i++;
+				}
+
+				if (end == targetEnd) {
+					j++;
+				}
+			}
+		}
+	}
+}
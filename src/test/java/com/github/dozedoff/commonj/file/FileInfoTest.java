@@ -18,6 +18,8 @@ import java.nio.file.Paths;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.github.dozedoff.commonj.hash.HashValue;
+
 public class FileInfoTest {
 	private FileInfo fi;
 
@@ -129,6 +131,28 @@ public class FileInfoTest {
 		assertFalse(fi.hasHash());
 	}
 
+	@Test
+	public void testSetHashValue() {
+		fi.setHashValue(HashValue.fromHex(testHash1));
+		assertThat(fi.getHashValue(), is(HashValue.fromHex(testHash1)));
+		assertThat(fi.getHash(), is(testHash1));
+	}
+
+	@Test
+	public void testHasHashValue() {
+		fi.setHash(null);
+		fi.setHashValue(HashValue.fromHex(testHash1));
+		assertTrue(fi.hasHash());
+	}
+
+	@Test
+	public void testSetHashReplacesHashValue() {
+		fi.setHashValue(HashValue.fromHex(testHash1));
+		fi.setHash(testHash2);
+		assertNull(fi.getHashValue());
+		assertThat(fi.getHash(), is(testHash2));
+	}
+
 	@Test
 	public void testHasPath() {
 		assertTrue(fi.hasPath());
@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.file;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelFileWalkerTest {
+	private Path root;
+	private List<Path> files;
+	private Set<Path> found;
+	private ParallelFileWalker cut;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("ParallelFileWalkerTest");
+		files = new ArrayList<>();
+		found = ConcurrentHashMap.newKeySet();
+		cut = new ParallelFileWalker(4);
+
+		files.add(Files.createFile(root.resolve("one.txt")));
+
+		for (int i = 0; i < 10; i++) {
+			Path dir = Files.createDirectories(root.resolve("dir" + i).resolve("sub"));
+			files.add(Files.createFile(dir.getParent().resolve("a" + i)));
+			files.add(Files.createFile(dir.resolve("b" + i)));
+		}
+
+		Files.createDirectory(root.resolve("empty"));
+	}
+
+	@Test
+	public void testWalkFindsAllFiles() throws Exception {
+		cut.walk(root, (file, attrs) -> found.add(file));
+
+		assertThat(found, containsInAnyOrder(files.toArray()));
+	}
+
+	@Test
+	public void testWalkSingleThread() throws Exception {
+		cut = new ParallelFileWalker(1);
+		cut.walk(root, (file, attrs) -> found.add(file));
+
+		assertThat(found, containsInAnyOrder(files.toArray()));
+	}
+
+	@Test
+	public void testWalkFile() throws Exception {
+		cut.walk(files.get(0), (file, attrs) -> found.add(file));
+
+		assertThat(found, containsInAnyOrder(files.get(0)));
+	}
+
+	@Test
+	public void testAttributes() throws Exception {
+		Files.write(files.get(0), new byte[] { 1, 2, 3 });
+		List<Long> sizes = new ArrayList<>();
+
+		cut.walk(files.get(0), (file, attrs) -> sizes.add(attrs.size()));
+
+		assertThat(sizes.get(0), is(3L));
+	}
+
+	@Test
+	public void testSymlinkNotFollowed() throws Exception {
+		Path link = root.resolve("link");
+		Files.createSymbolicLink(link, root.resolve("dir0"));
+		files.add(link);
+
+		cut.walk(root, (file, attrs) -> found.add(file));
+
+		assertThat(found, containsInAnyOrder(files.toArray()));
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testWalkMissingDirectory() throws Exception {
+		cut.walk(root.resolve("missing"), (file, attrs) -> found.add(file));
+	}
+
+	@Test(expected = IOException.class)
+	public void testHandlerExceptionAbortsWalk() throws Exception {
+		cut.walk(root, (file, attrs) -> {
+			throw new IOException("test");
+		});
+	}
+
+	@Test
+	public void testNoHandlerCallsAfterAbort() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 20; j++) {
+				Files.createFile(root.resolve("dir" + i).resolve("sub").resolve("c" + j));
+			}
+		}
+
+		AtomicBoolean returned = new AtomicBoolean();
+		AtomicInteger callsAfterReturn = new AtomicInteger();
+
+		try {
+			cut.walk(root, (file, attrs) -> {
+				if (returned.get()) {
+					callsAfterReturn.incrementAndGet();
+				}
+
+				sleep(2);
+
+				if (file.getFileName().toString().equals("c5")) {
+					throw new IOException("test");
+				}
+			});
+		} catch (IOException e) {
+			returned.set(true);
+		}
+
+		Thread.sleep(200);
+
+		assertThat(returned.get(), is(true));
+		assertThat(callsAfterReturn.get(), is(0));
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() throws Exception {
+		new ParallelFileWalker(0);
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncHashMakerTest {
+	private static final int TEST_TIMEOUT = 5000;
+	private static final byte[] DATA = { 12, 45, 6, 12, 99 };
+	private static final HashValue HASH = HashValue
+			.fromHex("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815");
+
+	private ExecutorService pool;
+	private AsyncHashMaker cut;
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		pool = Executors.newFixedThreadPool(4);
+		cut = new AsyncHashMaker("SHA-256", pool, 2);
+		file = Files.createTempFile("AsyncHashMakerTest", ".dat");
+		Files.write(file, DATA);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void assertRejected(CompletableFuture<HashValue> future) throws InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+			return;
+		}
+
+		throw new AssertionError("Expected an exception");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdownNow();
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashAsync() throws Exception {
+		assertThat(cut.hashAsync(file).get(), is(HASH));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashAsyncOwnPool() throws Exception {
+		cut = new AsyncHashMaker();
+
+		try {
+			assertThat(cut.hashAsync(file).get(), is(HASH));
+		} finally {
+			cut.shutdown();
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testMissingFile() throws Exception {
+		try {
+			cut.hashAsync(Paths.get("foo")).get();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), is(instanceOf(NoSuchFileException.class)));
+			return;
+		}
+
+		throw new AssertionError("Expected an exception");
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testBoundedConcurrency() throws Exception {
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		List<CompletableFuture<HashValue>> futures = new ArrayList<>();
+
+		for (int i = 0; i < 50; i++) {
+			futures.add(cut.submit(() -> {
+				maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+				sleep(5);
+				active.decrementAndGet();
+				return Channels.newChannel(new ByteArrayInputStream(DATA));
+			}));
+		}
+
+		for (CompletableFuture<HashValue> future : futures) {
+			assertThat(future.get(), is(HASH));
+		}
+
+		assertThat(maxActive.get(), is(lessThanOrEqualTo(2)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testDoesNotBlockCaller() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+
+		for (int i = 0; i < 10; i++) {
+			cut.submit(() -> {
+				await(release);
+				return Channels.newChannel(new ByteArrayInputStream(DATA));
+			});
+		}
+
+		assertThat(cut.getPendingCount(), is(8));
+		release.countDown();
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testCancelStopsMidFile() throws Exception {
+		AtomicReference<CompletableFuture<HashValue>> future = new AtomicReference<>();
+		AtomicInteger reads = new AtomicInteger();
+		CountDownLatch submitted = new CountDownLatch(1);
+		CountDownLatch closed = new CountDownLatch(1);
+
+		future.set(cut.submit(() -> {
+			await(submitted);
+
+			return new ReadableByteChannel() {
+				@Override
+				public int read(ByteBuffer dst) {
+					if (reads.incrementAndGet() == 3) {
+						future.get().cancel(true);
+					}
+
+					dst.put((byte) 1);
+					return 1;
+				}
+
+				@Override
+				public boolean isOpen() {
+					return true;
+				}
+
+				@Override
+				public void close() {
+					closed.countDown();
+				}
+			};
+		}));
+
+		submitted.countDown();
+		closed.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS);
+
+		assertThat(future.get().isCancelled(), is(true));
+		assertThat(reads.get(), is(3));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testCancelQueued() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger opened = new AtomicInteger();
+		AsyncHashMaker.ChannelOpener blocking = () -> {
+			await(release);
+			return Channels.newChannel(new ByteArrayInputStream(DATA));
+		};
+
+		CompletableFuture<HashValue> first = cut.submit(blocking);
+		cut.submit(blocking);
+		CompletableFuture<HashValue> queued = cut.submit(() -> {
+			opened.incrementAndGet();
+			return Channels.newChannel(new ByteArrayInputStream(DATA));
+		});
+
+		queued.cancel(true);
+		release.countDown();
+		first.get();
+		cut.hashAsync(file).get();
+
+		assertThat(opened.get(), is(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConcurrency() throws Exception {
+		new AsyncHashMaker("SHA-256", pool, 0);
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testDirectExecutorManyQueuedTasks() throws Exception {
+		AsyncHashMaker direct = new AsyncHashMaker("SHA-256", Runnable::run, 1);
+		List<CompletableFuture<HashValue>> futures = new ArrayList<>();
+
+		// queue the tasks while the first one is running, so they are run one after the other on this thread
+		CompletableFuture<HashValue> first = direct.submit(() -> {
+			for (int i = 0; i < 50000; i++) {
+				futures.add(direct.submit(() -> Channels.newChannel(new ByteArrayInputStream(DATA))));
+			}
+
+			return Channels.newChannel(new ByteArrayInputStream(DATA));
+		});
+
+		assertThat(first.get(), is(HASH));
+		assertThat(futures.size(), is(50000));
+
+		for (CompletableFuture<HashValue> future : futures) {
+			assertThat(future.get(), is(HASH));
+		}
+
+		assertThat(direct.getPendingCount(), is(0));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testMaxPending() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		cut = new AsyncHashMaker("SHA-256", pool, 1);
+		cut.setMaxPending(1);
+
+		CompletableFuture<HashValue> running = cut.submit(() -> {
+			await(release);
+			return Channels.newChannel(new ByteArrayInputStream(DATA));
+		});
+		CompletableFuture<HashValue> queued = cut.hashAsync(file);
+		CompletableFuture<HashValue> rejected = cut.hashAsync(file);
+
+		assertThat(rejected.isCompletedExceptionally(), is(true));
+		release.countDown();
+		assertThat(running.get(), is(HASH));
+		assertThat(queued.get(), is(HASH));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testShutdownFailsQueuedFiles() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		// one thread for two workers, so the second worker waits in the pool queue
+		cut = new AsyncHashMaker("SHA-256", Executors.newSingleThreadExecutor(), 2, true);
+
+		CompletableFuture<HashValue> running = cut.submit(() -> {
+			started.countDown();
+			await(release);
+			return Channels.newChannel(new ByteArrayInputStream(DATA));
+		});
+		CompletableFuture<HashValue> inPool = cut.hashAsync(file);
+		CompletableFuture<HashValue> pending = cut.hashAsync(file);
+
+		started.await();
+		cut.shutdown();
+
+		assertRejected(inPool);
+		assertRejected(pending);
+		assertRejected(cut.hashAsync(file));
+
+		release.countDown();
+		running.handle((hash, e) -> hash).get();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxPending() throws Exception {
+		cut.setMaxPending(0);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.hash.ChecksumManifest.Entry;
+import com.github.dozedoff.commonj.hash.ChecksumManifest.Status;
+import com.github.dozedoff.commonj.hash.ChecksumManifest.VerifyResult;
+
+public class ChecksumManifestTest {
+	private static final String HASH = "95f6a79d2199fc2cfa8f73c315aa16b33bf3544c407b4f9b29889333ca0db815";
+	private static final byte[] DATA = { 12, 45, 6, 12, 99 };
+
+	private Path root;
+	private Path manifest;
+	private ChecksumManifest cut;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("ChecksumManifestTest");
+		Files.write(root.resolve("one"), DATA);
+		Files.write(Files.createDirectories(root.resolve("sub")).resolve("two"), DATA);
+
+		for (int i = 0; i < 50; i++) {
+			Files.write(root.resolve("extra" + i), new byte[] { (byte) i });
+		}
+
+		manifest = Files.createTempFile("ChecksumManifestTest", ".sha256");
+		cut = new ChecksumManifest("SHA-256", 4);
+	}
+
+	@Test
+	public void testWriteFormat() throws Exception {
+		StringWriter writer = new StringWriter();
+
+		cut.write(root, writer);
+
+		assertThat(writer.toString(), containsString(HASH + "  sub/two\n"));
+		assertThat(writer.toString(), containsString(HASH + "  one\n"));
+	}
+
+	@Test
+	public void testWriteCounts() throws Exception {
+		HashJob job = cut.write(root, manifest);
+
+		List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+
+		assertThat(lines.size(), is(52));
+		assertThat(job.getFilesDone(), is(52L));
+	}
+
+	@Test
+	public void testWriteExcludesManifest() throws Exception {
+		Path inside = root.resolve("manifest.sha256");
+
+		cut.write(root, inside);
+
+		assertThat(Files.readAllLines(inside, StandardCharsets.UTF_8).size(), is(52));
+	}
+
+	@Test
+	public void testWriteReportsFailedFiles() throws Exception {
+		Files.createSymbolicLink(root.resolve("broken"), root.resolve("nothing"));
+		StringWriter writer = new StringWriter();
+
+		try {
+			cut.write(root, writer);
+		} catch (IOException e) {
+			assertThat(e.getMessage(), containsString("Could not hash 1 files"));
+			assertThat(e.getMessage(), containsString("broken"));
+			assertThat(writer.toString().split("\n").length, is(52));
+			return;
+		}
+
+		throw new AssertionError("Expected an exception");
+	}
+
+	@Test
+	public void testWriteStopsOnWriterError() throws Exception {
+		AtomicInteger writes = new AtomicInteger();
+		Writer failing = new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				writes.incrementAndGet();
+				throw new IOException("test");
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		try {
+			cut.write(root, new BufferedWriter(failing, 1));
+		} catch (IOException e) {
+			assertThat(e.getMessage(), is("test"));
+			assertThat(writes.get(), is(1));
+			return;
+		}
+
+		throw new AssertionError("Expected an exception");
+	}
+
+	@Test
+	public void testVerifyOk() throws Exception {
+		cut.write(root, manifest);
+
+		VerifyResult result = cut.verify(root, manifest, false);
+
+		assertThat(result.isOk(), is(true));
+		assertThat(result.getChecked(), is(52L));
+	}
+
+	@Test
+	public void testVerifyProblems() throws Exception {
+		cut.write(root, manifest);
+		Files.write(root.resolve("one"), new byte[] { 1 });
+		Files.delete(root.resolve("sub").resolve("two"));
+
+		VerifyResult result = cut.verify(root, manifest, false);
+
+		assertThat(result.isOk(), is(false));
+		assertThat(result.getChecked(), is(52L));
+		assertThat(result.getFiles(Status.MISMATCH), contains("one"));
+		assertThat(result.getFiles(Status.MISSING), contains("sub/two"));
+	}
+
+	@Test
+	public void testVerifyStopOnFirstProblem() throws Exception {
+		StringBuilder lines = new StringBuilder();
+
+		for (int i = 0; i < 1000; i++) {
+			lines.append(HASH).append("  missing").append(i).append('\n');
+		}
+
+		Files.write(manifest, lines.toString().getBytes(StandardCharsets.UTF_8));
+
+		VerifyResult result = cut.verify(root, manifest, true);
+
+		assertThat(result.isStopped(), is(true));
+		assertThat(result.getChecked(), is(lessThan(1000L)));
+	}
+
+	@Test
+	public void testVerifySha256sumOutput() throws Exception {
+		Files.write(manifest, (HASH + " *one\n" + HASH + "  sub/two\n").getBytes(StandardCharsets.UTF_8));
+
+		assertThat(cut.verify(root, manifest, false).isOk(), is(true));
+	}
+
+	@Test(expected = IOException.class)
+	public void testVerifyInvalidLine() throws Exception {
+		Files.write(manifest, "foo\n".getBytes(StandardCharsets.UTF_8));
+
+		cut.verify(root, manifest, false);
+	}
+
+	@Test
+	public void testFormatLineEscaped() throws Exception {
+		String line = ChecksumManifest.formatLine(HashValue.fromHex(HASH), Paths.get("a\nb"));
+
+		assertThat(line, is("\\" + HASH + "  a\\nb"));
+	}
+
+	@Test
+	public void testParseLineEscaped() throws Exception {
+		Entry entry = ChecksumManifest.parseLine("\\" + HASH + "  a\\\\b\\nc", 1);
+
+		assertThat(entry.path, is("a\\b\nc"));
+		assertThat(entry.hash, is(HashValue.fromHex(HASH)));
+	}
+
+	@Test
+	public void testGetFilesStatuses() throws Exception {
+		cut.write(root, manifest);
+		Files.write(root.resolve("extra1"), new byte[] { 42 });
+		Files.write(root.resolve("extra2"), new byte[] { 42 });
+
+		VerifyResult result = cut.verify(root, manifest, false);
+
+		assertThat(result.getFiles(Status.MISMATCH), containsInAnyOrder("extra1", "extra2"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() throws Exception {
+		new ChecksumManifest("SHA-256", 0);
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkIndexTest {
+	private static final double EPSILON = 0.0001;
+
+	private Path original;
+	private Path copy;
+	private Path edited;
+	private Path unrelated;
+	private ContentChunker chunker;
+	private ChunkIndex cut;
+
+	private static byte[] randomBytes(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		Path dir = Files.createTempDirectory("ChunkIndexTest");
+		byte[] data = randomBytes(100000, 1);
+
+		original = Files.write(dir.resolve("original"), data);
+		copy = Files.write(dir.resolve("copy"), data);
+		data[50000]++;
+		edited = Files.write(dir.resolve("edited"), data);
+		unrelated = Files.write(dir.resolve("unrelated"), randomBytes(100000, 2));
+
+		chunker = new ContentChunker(Digests.XXH64, 256, 1024, 4096);
+		cut = new ChunkIndex();
+
+		for (Path file : new Path[] { original, copy, edited, unrelated }) {
+			cut.addFile(file, chunker);
+		}
+	}
+
+	@Test
+	public void testFileCount() throws Exception {
+		assertThat(cut.getFileCount(), is(4));
+	}
+
+	@Test
+	public void testSharedRatioCopy() throws Exception {
+		assertThat(cut.getSharedRatio(original, copy), is(closeTo(1.0, EPSILON)));
+	}
+
+	@Test
+	public void testSharedRatioEdited() throws Exception {
+		double ratio = cut.getSharedRatio(original, edited);
+
+		assertThat(ratio, is(greaterThan(0.9)));
+		assertThat(ratio < 1.0, is(true));
+	}
+
+	@Test
+	public void testSharedRatioUnrelated() throws Exception {
+		assertThat(cut.getSharedRatio(original, unrelated), is(closeTo(0.0, EPSILON)));
+	}
+
+	@Test
+	public void testSharedRatioWithIndex() throws Exception {
+		assertThat(cut.getSharedRatio(unrelated), is(closeTo(0.0, EPSILON)));
+		assertThat(cut.getSharedRatio(original), is(closeTo(1.0, EPSILON)));
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		assertThat(cut.remove(copy), is(true));
+		assertThat(cut.remove(edited), is(true));
+
+		assertThat(cut.getSharedRatio(original), is(closeTo(0.0, EPSILON)));
+		assertThat(cut.get(copy), is(nullValue()));
+	}
+
+	@Test
+	public void testReplace() throws Exception {
+		int chunkCount = cut.getChunkCount();
+
+		cut.addFile(original, chunker);
+
+		assertThat(cut.getFileCount(), is(4));
+		assertThat(cut.getChunkCount(), is(chunkCount));
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		Path indexFile = Files.createTempFile("ChunkIndexTest", ".idx");
+
+		cut.save(indexFile);
+		ChunkIndex loaded = ChunkIndex.load(indexFile);
+
+		assertThat(loaded.getFileCount(), is(4));
+		assertThat(loaded.getChunkCount(), is(cut.getChunkCount()));
+		assertThat(loaded.getSharedRatio(original, edited), is(cut.getSharedRatio(original, edited)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownFile() throws Exception {
+		cut.getSharedRatio(original.resolveSibling("foo"));
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ConcurrentHashMakerTest {
+	private static final String HASH_1 = "95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815";
+	private static final String HASH_2 = "20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB";
+
+	private byte[] testData = { 12, 45, 6, 12, 99 };
+	private byte[] testData2 = { 99, 21, 6, 45, 12 };
+
+	private static Path testFile, testFile2;
+
+	private ConcurrentHashMaker chm;
+
+	@BeforeClass
+	public static void classSetup() throws URISyntaxException {
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		testFile = Paths.get(cl.getResource("test1").toURI());
+		testFile2 = Paths.get(cl.getResource("test2").toURI());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		chm = new ConcurrentHashMaker();
+	}
+
+	@Test
+	public void testHash() {
+		assertThat(chm.hash(testData), is(HASH_1));
+	}
+
+	@Test
+	public void testHashNull() {
+		assertNull(chm.hash(null));
+	}
+
+	@Test
+	public void testHashFile() {
+		assertThat(chm.hashFile(testFile2), is(HASH_2));
+	}
+
+	@Test
+	public void testHashFileMapped() {
+		chm.setMappedThreshold(0);
+
+		assertThat(chm.hashFile(testFile), is(HASH_1));
+	}
+
+	@Test
+	public void testHashStream() throws Exception {
+		assertThat(chm.hashStream(new ByteArrayInputStream(testData)), is(HASH_1));
+	}
+
+	@Test
+	public void testHashChannel() throws Exception {
+		assertThat(chm.hashChannel(Channels.newChannel(new ByteArrayInputStream(testData2))), is(HASH_2));
+	}
+
+	@Test
+	public void testAlgorithm() {
+		assertThat(new ConcurrentHashMaker("MD5").hash(testData), is(new HashMaker("MD5").hash(testData)));
+	}
+
+	@Test
+	public void testSameInstanceForThread() {
+		assertThat(chm.get(), is(sameInstance(chm.get())));
+	}
+
+	@Test
+	public void testDifferentInstanceForThreads() throws Exception {
+		HashMaker local = chm.get();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			HashMaker other = executor.submit(() -> chm.get()).get();
+			assertThat(other, is(not(sameInstance(local))));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeMappedThreshold() {
+		chm.setMappedThreshold(-1);
+	}
+
+	@Test
+	public void testConcurrentHashing() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Callable<String>> tasks = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			final boolean first = i % 2 == 0;
+			tasks.add(() -> first ? chm.hash(testData) : chm.hashFile(testFile2));
+		}
+
+		try {
+			List<Future<String>> results = executor.invokeAll(tasks);
+
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get(), is(i % 2 == 0 ? HASH_1 : HASH_2));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
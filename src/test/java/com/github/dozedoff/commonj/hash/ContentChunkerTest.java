@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContentChunkerTest {
+	private static final int MIN = 256;
+	private static final int AVERAGE = 1024;
+	private static final int MAX = 4096;
+
+	private byte[] data;
+	private ContentChunker cut;
+	private List<long[]> chunks;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[200000];
+		new Random(42).nextBytes(data);
+
+		cut = new ContentChunker(Digests.XXH64, MIN, AVERAGE, MAX);
+		chunks = new ArrayList<>();
+	}
+
+	private static ReadableByteChannel channel(byte[] data) {
+		return Channels.newChannel(new ByteArrayInputStream(data));
+	}
+
+	private void chunk(byte[] data) throws Exception {
+		cut.chunk(channel(data), (offset, length, hash) -> chunks.add(new long[] { offset, length, hash.prefix() }));
+	}
+
+	@Test
+	public void testChunksCoverData() throws Exception {
+		chunk(data);
+
+		long expectedOffset = 0;
+
+		for (long[] chunk : chunks) {
+			assertThat(chunk[0], is(expectedOffset));
+			expectedOffset += chunk[1];
+		}
+
+		assertThat(expectedOffset, is((long) data.length));
+	}
+
+	@Test
+	public void testChunkSizes() throws Exception {
+		chunk(data);
+
+		for (int i = 0; i < chunks.size() - 1; i++) {
+			assertThat(chunks.get(i)[1], is(greaterThanOrEqualTo((long) MIN)));
+			assertThat(chunks.get(i)[1], is(lessThanOrEqualTo((long) MAX)));
+		}
+	}
+
+	@Test
+	public void testAverageSize() throws Exception {
+		chunk(data);
+
+		double average = (double) data.length / chunks.size();
+
+		assertThat(average, is(greaterThanOrEqualTo(AVERAGE / 2.0)));
+		assertThat(average, is(lessThanOrEqualTo(AVERAGE * 2.0)));
+	}
+
+	@Test
+	public void testChunkHash() throws Exception {
+		chunk(data);
+		long[] second = chunks.get(1);
+		byte[] chunkData = Arrays.copyOfRange(data, (int) second[0], (int) (second[0] + second[1]));
+
+		assertThat(second[2], is(new HashMaker(Digests.XXH64).digest(chunkData).prefix()));
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		chunk(new byte[MAX * 3]);
+
+		assertThat(chunks.size(), is(3));
+		assertThat(chunks.get(0)[1], is((long) MAX));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		chunk(new byte[0]);
+
+		assertThat(chunks.size(), is(0));
+	}
+
+	@Test
+	public void testInsertKeepsLaterBoundaries() throws Exception {
+		ChunkList original = new ChunkList();
+		ChunkList edited = new ChunkList();
+		byte[] insert = { 1, 2, 3, 4, 5, 6, 7 };
+		byte[] editedData = new byte[data.length + insert.length];
+		System.arraycopy(data, 0, editedData, 0, 1000);
+		System.arraycopy(insert, 0, editedData, 1000, insert.length);
+		System.arraycopy(data, 1000, editedData, 1000 + insert.length, data.length - 1000);
+
+		cut.chunk(channel(data), original);
+		cut.chunk(channel(editedData), edited);
+
+		assertThat(edited.getKey(edited.size() - 1), is(original.getKey(original.size() - 1)));
+		assertThat(edited.size(), is(greaterThan(original.size() - 3)));
+	}
+
+	@Test
+	public void testChunkFile() throws Exception {
+		Path file = Files.createTempFile("ContentChunkerTest", ".dat");
+		Files.write(file, data);
+		ChunkList fromFile = cut.chunkFile(file);
+
+		chunk(data);
+
+		assertThat(fromFile.size(), is(chunks.size()));
+		assertThat(fromFile.getTotalLength(), is((long) data.length));
+	}
+
+	@Test
+	public void testDeterministic() throws Exception {
+		chunk(data);
+		List<long[]> first = new ArrayList<>(chunks);
+		chunks.clear();
+
+		chunk(data);
+
+		for (int i = 0; i < first.size(); i++) {
+			assertThat(chunks.get(i), is(first.get(i)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAverageNotPowerOfTwo() throws Exception {
+		new ContentChunker(Digests.XXH64, MIN, 1000, MAX);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMinGreaterThanAverage() throws Exception {
+		new ContentChunker(Digests.XXH64, 2048, AVERAGE, MAX);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAlgorithm() throws Exception {
+		new ContentChunker("foo", MIN, AVERAGE, MAX);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.string.Convert;
+import com.google.common.hash.Hashing;
+
+public class DigestsTest {
+	private static final byte[] SPAM = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+
+	private static String xxh64(String data) throws NoSuchAlgorithmException {
+		return xxh64(data.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static String xxh64(byte[] data) throws NoSuchAlgorithmException {
+		return Convert.byteToHex(Digests.getInstance(Digests.XXH64).digest(data));
+	}
+
+	@Test
+	public void testXxHash64Empty() throws Exception {
+		assertThat(xxh64(""), is("EF46DB3751D8E999"));
+	}
+
+	@Test
+	public void testXxHash64Short() throws Exception {
+		assertThat(xxh64("a"), is("D24EC4F1A98C6E5B"));
+		assertThat(xxh64("abc"), is("44BC2CF5AD770999"));
+	}
+
+	@Test
+	public void testXxHash64Long() throws Exception {
+		assertThat(xxh64(SPAM), is("FBCEA83C8A378BF1"));
+	}
+
+	@Test
+	public void testXxHash64Streaming() throws Exception {
+		byte[] data = new byte[1000];
+		new Random(7).nextBytes(data);
+		MessageDigest md = Digests.getInstance(Digests.XXH64);
+
+		for (int offset = 0; offset < data.length; offset += 13) {
+			md.update(data, offset, Math.min(13, data.length - offset));
+		}
+
+		assertThat(Convert.byteToHex(md.digest()), is(xxh64(data)));
+	}
+
+	@Test
+	public void testXxHash64SingleBytes() throws Exception {
+		MessageDigest md = Digests.getInstance(Digests.XXH64);
+
+		for (byte b : SPAM) {
+			md.update(b);
+		}
+
+		assertThat(Convert.byteToHex(md.digest()), is("FBCEA83C8A378BF1"));
+	}
+
+	@Test
+	public void testXxHash64Clone() throws Exception {
+		MessageDigest md = Digests.getInstance(Digests.XXH64);
+		md.update(SPAM, 0, 35);
+
+		MessageDigest copy = (MessageDigest) md.clone();
+		md.update(SPAM, 35, SPAM.length - 35);
+		copy.update(SPAM, 35, SPAM.length - 35);
+
+		assertThat(Convert.byteToHex(copy.digest()), is(Convert.byteToHex(md.digest())));
+	}
+
+	@Test
+	public void testMurmur3() throws Exception {
+		byte[] expected = Hashing.murmur3_128().hashBytes(SPAM).asBytes();
+
+		assertThat(Digests.getInstance(Digests.MURMUR3_128).digest(SPAM), is(expected));
+	}
+
+	@Test
+	public void testDigestLength() throws Exception {
+		assertThat(Digests.getInstance(Digests.XXH64).getDigestLength(), is(8));
+		assertThat(Digests.getInstance(Digests.MURMUR3_128).getDigestLength(), is(16));
+		assertThat(Digests.getInstance(Digests.CRC32C).getDigestLength(), is(4));
+	}
+
+	@Test
+	public void testCaseInsensitive() throws Exception {
+		assertThat(Digests.getInstance("xxh64").getAlgorithm(), is(Digests.XXH64));
+	}
+
+	@Test
+	public void testProviderAlgorithm() throws Exception {
+		assertThat(Digests.getInstance("SHA-256").getAlgorithm(), is("SHA-256"));
+	}
+
+	@Test(expected = NoSuchAlgorithmException.class)
+	public void testUnknownAlgorithm() throws Exception {
+		Digests.getInstance("notValid");
+	}
+
+	@Test(expected = NoSuchAlgorithmException.class)
+	public void testNullAlgorithm() throws Exception {
+		Digests.getInstance(null);
+	}
+}
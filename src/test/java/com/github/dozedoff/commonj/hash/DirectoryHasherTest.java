@@ -5,17 +5,33 @@
  */
 package com.github.dozedoff.commonj.hash;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import org.awaitility.Duration;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -24,6 +40,7 @@ import com.github.dozedoff.commonj.file.FileInfo;
 
 public class DirectoryHasherTest {
 	private final static int TEST_TIMEOUT = 4000;
+	private static final Duration AWAIT_DURATION = new Duration(3, TimeUnit.SECONDS);
 
 	private File tempDir;
 	private BinaryFileWriter bfr = new BinaryFileWriter();
@@ -48,6 +65,11 @@ public class DirectoryHasherTest {
 		dh = new DirectoryHasher(fileQueue);
 	}
 
+	@After
+	public void tearDown() throws Exception {
+		dh.shutdown();
+	}
+
 	@Test(timeout = TEST_TIMEOUT)
 	public void testHashDirectory() throws Exception {
 		dh.hashDirectory(tempDir.toString());
@@ -65,6 +87,363 @@ public class DirectoryHasherTest {
 		assertThat(fileQueue.remove().getFilePath().toString(), containsString("testFile2.txt"));
 	}
 
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashValue() throws InterruptedException, IOException {
+		dh.setFilter(new testFilter());
+
+		dh.hashDirectory(tempDir.toString());
+		spinWaitForQueue(1);
+		assertThat(fileQueue.remove().getHashValue(),
+				is(HashValue.fromHex("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB")));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashDirectoryParallelWalk() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			File subDir = new File(tempDir, "sub" + i);
+			subDir.mkdir();
+			bfr.write(testData, new File(subDir, "extra").toPath());
+		}
+
+		dh.setWalkParallelism(4);
+
+		HashJob job = dh.hashDirectory(tempDir.toString());
+		job.getCompletion().get();
+
+		assertThat(fileQueue.size(), is(22));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWalkParallelism() {
+		dh.setWalkParallelism(0);
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testReadOrder() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			bfr.write(new byte[(i * 7) % 10 + 10], new File(tempDir, "sized" + i).toPath());
+		}
+
+		dh.shutdown();
+		dh = new DirectoryHasher(fileQueue, "SHA-256", 1, 1, 100);
+		dh.setReadOrder(BasicFileAttributes::size, 100);
+
+		dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		List<Long> sizes = fileQueue.stream().map(FileInfo::getSize).collect(Collectors.toList());
+		List<Long> sorted = new ArrayList<>(sizes);
+		Collections.sort(sorted);
+
+		assertThat(sizes, is(sorted));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testReadOrderSmallWindow() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			bfr.write(testData, new File(tempDir, "extra" + i).toPath());
+		}
+
+		dh.setReadOrder(DirectoryHasher.INODE_ORDER, 3);
+
+		dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		assertThat(fileQueue.size(), is(12));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testReadOrderParallelWalk() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			File subDir = new File(tempDir, "sub" + i);
+			subDir.mkdir();
+			bfr.write(testData, new File(subDir, "extra").toPath());
+		}
+
+		dh.setWalkParallelism(4);
+		dh.setReadOrder(DirectoryHasher.INODE_ORDER, 5);
+
+		dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		assertThat(fileQueue.size(), is(22));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidReadWindow() {
+		dh.setReadOrder(DirectoryHasher.INODE_ORDER, 0);
+	}
+
+	@Test
+	public void testInode() throws Exception {
+		assertThat(DirectoryHasher.inode("(dev=fe00,ino=262164)"), is(262164L));
+	}
+
+	@Test
+	public void testInodeNullKey() throws Exception {
+		assertThat(DirectoryHasher.inode(null), is(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testInodeUnknownKey() throws Exception {
+		assertThat(DirectoryHasher.inode("foo"), is(Long.MAX_VALUE));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testThrottledHashValue() throws Exception {
+		dh.setFilter(new testFilter());
+		dh.getThrottle().setBytesPerSecond(1000000);
+		dh.getThrottle().setFilesPerSecond(100);
+
+		dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		assertThat(fileQueue.remove().getHash(), is("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB"));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testSinkBatches() throws Exception {
+		for (int i = 0; i < 23; i++) {
+			bfr.write(testData, new File(tempDir, "extra" + i).toPath());
+		}
+
+		List<Integer> batchSizes = new ArrayList<>();
+		List<FileInfo> results = new ArrayList<>();
+
+		dh.shutdown();
+		dh = new DirectoryHasher(batch -> {
+			batchSizes.add(batch.size());
+			results.addAll(batch);
+		}, 10, "SHA-256", 2, 1, 100);
+
+		dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		assertThat(results.size(), is(25));
+		assertThat(Collections.max(batchSizes), is(lessThanOrEqualTo(10)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testSinkBackpressure() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			bfr.write(testData, new File(tempDir, "extra" + i).toPath());
+		}
+
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger delivering = new AtomicInteger();
+		List<FileInfo> results = new ArrayList<>();
+
+		dh.shutdown();
+		dh = new DirectoryHasher(batch -> {
+			delivering.incrementAndGet();
+			release.await();
+			results.addAll(batch);
+		}, 5, "SHA-256", 2, 1, 100);
+
+		HashJob job = dh.hashDirectory(tempDir.toString());
+		await().atMost(AWAIT_DURATION).until(delivering::get, is(1));
+
+		assertThat(job.isDone(), is(false));
+		assertThat(job.getFilesDone(), is(0L));
+
+		release.countDown();
+		job.getCompletion().get();
+
+		assertThat(results.size(), is(22));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testSinkFailure() throws Exception {
+		dh.shutdown();
+		dh = new DirectoryHasher(batch -> {
+			throw new IllegalStateException("test");
+		}, 1, "SHA-256", 1, 1, 100);
+
+		HashJob job = dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+		assertThat(job.getFilesFailed(), is(2L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBatchSize() {
+		new DirectoryHasher(batch -> {
+		}, 0, "SHA-256", 1, 1, 1);
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashDirectoryWithAlgorithm() throws Exception {
+		dh.shutdown();
+		dh = new DirectoryHasher(fileQueue, Digests.XXH64);
+		dh.setFilter(new testFilter());
+
+		dh.hashDirectory(tempDir.toString());
+		spinWaitForQueue(1);
+		assertThat(fileQueue.remove().getHash(), is(new HashMaker(Digests.XXH64).hash(testData2)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashCacheIsFilled() throws Exception {
+		try (HashCache cache = new HashCache(Files.createTempFile("DirectoryHasherTest", ".cache"), "SHA-256")) {
+			dh.setFilter(new testFilter());
+			dh.setHashCache(cache);
+
+			dh.hashDirectory(tempDir.toString());
+			spinWaitForQueue(1);
+
+			assertThat(cache.size(), is(1));
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testHashCacheIsUsed() throws Exception {
+		Path file = new File(tempDir, "testFile2.txt").toPath();
+		HashValue cached = HashValue.fromHex("AABBCC");
+
+		try (HashCache cache = new HashCache(Files.createTempFile("DirectoryHasherTest", ".cache"), "SHA-256")) {
+			cache.put(file, Files.readAttributes(file, BasicFileAttributes.class), cached);
+			dh.setFilter(new testFilter());
+			dh.setHashCache(cache);
+
+			dh.hashDirectory(tempDir.toString());
+			spinWaitForQueue(1);
+
+			assertThat(fileQueue.remove().getHashValue(), is(cached));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHashCacheWrongAlgorithm() throws Exception {
+		try (HashCache cache = new HashCache(Files.createTempFile("DirectoryHasherTest", ".cache"), "MD5")) {
+			dh.setHashCache(cache);
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testManyFilesSmallQueue() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			bfr.write(testData, new File(tempDir, "extra" + i).toPath());
+		}
+
+		dh.shutdown();
+		dh = new DirectoryHasher(fileQueue, "SHA-256", 4, 2, 1);
+		dh.hashDirectory(tempDir.toString());
+		spinWaitForQueue(52);
+		assertThat(fileQueue.size(), is(52));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testWorkersBlockWhenIdle() throws Exception {
+		dh.shutdown();
+		dh = new DirectoryHasher(fileQueue, "SHA-256", 3, 1, 10);
+
+		for (DirectoryHasher.HashWorker worker : dh.getHashWorkers()) {
+			while (worker.getState() != Thread.State.WAITING) {
+				Thread.sleep(10);
+			}
+		}
+
+		assertThat(dh.getHashWorkers().size(), is(3));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testShutdown() throws Exception {
+		dh.shutdown();
+
+		for (DirectoryHasher.HashWorker worker : dh.getHashWorkers()) {
+			worker.join();
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testShutdownDuringWalk() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			bfr.write(testData, new File(tempDir, "extra" + i).toPath());
+		}
+
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		dh.shutdown();
+		dh = new DirectoryHasher(batch -> {
+			delivering.countDown();
+			release.await();
+		}, 1, "SHA-256", 1, 1, 1);
+
+		ExecutorService walker = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<HashJob> walk = walker.submit(() -> dh.hashDirectory(tempDir.toString()));
+
+			delivering.await();
+			dh.shutdown();
+
+			HashJob job = walk.get().getCompletion().get();
+
+			assertThat(job.getFilesQueued(), is(22L));
+			assertThat(job.getFilesDone(), is(0L));
+			assertThat(job.getFilesFailed(), is(22L));
+		} finally {
+			walker.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreadCount() {
+		new DirectoryHasher(fileQueue, "SHA-256", 0, 1, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIoParallelism() {
+		new DirectoryHasher(fileQueue, "SHA-256", 1, 0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidQueueCapacity() {
+		new DirectoryHasher(fileQueue, "SHA-256", 1, 1, 0);
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testJobCompletes() throws Exception {
+		HashJob job = dh.hashDirectory(tempDir.toString());
+
+		job.getCompletion().get();
+
+		assertThat(fileQueue.size(), is(2));
+		assertThat(job.getFilesQueued(), is(2L));
+		assertThat(job.getFilesDone(), is(2L));
+		assertThat(job.getBytesHashed(), is(10L));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testJobCountsFailedFiles() throws Exception {
+		dh.setFilter(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				if (name.contains("1")) {
+					new File(dir, name).delete();
+				}
+
+				return true;
+			}
+		});
+
+		HashJob job = dh.hashDirectory(tempDir.toString());
+		job.getCompletion().get();
+
+		assertThat(job.getFilesDone(), is(1L));
+		assertThat(job.getFilesFailed(), is(1L));
+		assertThat(fileQueue.size(), is(1));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testJobCountsCachedFilesWithoutBytes() throws Exception {
+		try (HashCache cache = new HashCache(Files.createTempFile("DirectoryHasherTest", ".cache"), "SHA-256")) {
+			dh.setHashCache(cache);
+			dh.hashDirectory(tempDir.toString()).getCompletion().get();
+
+			HashJob job = dh.hashDirectory(tempDir.toString());
+			job.getCompletion().get();
+
+			assertThat(job.getFilesDone(), is(2L));
+			assertThat(job.getBytesHashed(), is(0L));
+		}
+	}
+
 	@Test(expected = IOException.class)
 	public void testInvalidDirectory() throws IOException {
 		dh.hashDirectory(tempDir + File.pathSeparator + "null");
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.file.FileInfo;
+
+public class DirectoryWatchTest {
+	private static final Duration AWAIT_DURATION = new Duration(5, TimeUnit.SECONDS);
+	private static final long DEBOUNCE_MILLIS = 200;
+
+	private Path tempDir;
+	private List<FileInfo> results;
+	private DirectoryHasher dh;
+	private DirectoryWatch cut;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("DirectoryWatchTest");
+		Files.write(tempDir.resolve("existing"), new byte[] { 1, 2, 3 });
+
+		results = new CopyOnWriteArrayList<>();
+		dh = new DirectoryHasher(results::addAll, 1, "SHA-256", 2, 1, 100);
+		cut = dh.watchDirectory(tempDir.toString(), DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+		cut.getInitialJob().getCompletion().get();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cut.close();
+		dh.shutdown();
+	}
+
+	private long countResults(Path file) {
+		return results.stream().filter(fi -> fi.getFilePath().equals(file)).count();
+	}
+
+	@Test
+	public void testInitialPass() throws Exception {
+		assertThat(countResults(tempDir.resolve("existing")), is(1L));
+	}
+
+	@Test
+	public void testModifiedFileIsHashed() throws Exception {
+		Path file = tempDir.resolve("existing");
+		Files.write(file, new byte[] { 4, 5, 6 });
+
+		await().atMost(AWAIT_DURATION).until(() -> countResults(file), is(2L));
+	}
+
+	@Test
+	public void testCreatedFileIsHashed() throws Exception {
+		Path file = tempDir.resolve("created");
+		Files.write(file, new byte[] { 4, 5, 6 });
+
+		await().atMost(AWAIT_DURATION).until(() -> countResults(file), is(1L));
+	}
+
+	@Test
+	public void testFileInNewDirectoryIsHashed() throws Exception {
+		Path file = Files.createDirectories(tempDir.resolve("new").resolve("sub")).resolve("created");
+		Files.write(file, new byte[] { 4, 5, 6 });
+
+		await().atMost(AWAIT_DURATION).until(() -> countResults(file), is(1L));
+	}
+
+	@Test
+	public void testBurstIsCoalesced() throws Exception {
+		Path file = tempDir.resolve("burst");
+
+		for (int i = 0; i < 10; i++) {
+			Files.write(file, new byte[] { (byte) i });
+			Thread.sleep(10);
+		}
+
+		await().atMost(AWAIT_DURATION).until(() -> countResults(file), is(1L));
+		Thread.sleep(DEBOUNCE_MILLIS * 2);
+
+		assertThat(countResults(file), is(1L));
+	}
+
+	@Test
+	public void testDeletedFileIsNotHashed() throws Exception {
+		Path file = tempDir.resolve("deleted");
+		Files.write(file, new byte[] { 4, 5, 6 });
+		Files.delete(file);
+		Path marker = tempDir.resolve("marker");
+		Files.write(marker, new byte[] { 1 });
+
+		await().atMost(AWAIT_DURATION).until(() -> countResults(marker), is(1L));
+
+		assertThat(countResults(file), is(0L));
+	}
+
+	@Test
+	public void testChangeJobCompletesAfterClose() throws Exception {
+		Path file = tempDir.resolve("created");
+		Files.write(file, new byte[] { 4, 5, 6 });
+		await().atMost(AWAIT_DURATION).until(() -> countResults(file), is(1L));
+
+		cut.close();
+		HashJob job = cut.getChangeJob().getCompletion().get(5, TimeUnit.SECONDS);
+
+		assertThat(job.getFilesDone(), is(1L));
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dozedoff.commonj.file.FileInfo;
+
+public class DuplicateFinderTest {
+	private static final int SAMPLE_SIZE = 16;
+	private static final int FILE_SIZE = 1000;
+
+	private Path tempDir;
+	private byte[] data;
+	private DuplicateFinder finder;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("DuplicateFinderTest");
+		data = new byte[FILE_SIZE];
+		new Random(42).nextBytes(data);
+
+		finder = new DuplicateFinder("SHA-256", SAMPLE_SIZE);
+	}
+
+	private void write(String name, byte[] content) throws Exception {
+		Files.createDirectories(tempDir.resolve(name).getParent());
+		Files.write(tempDir.resolve(name), content);
+	}
+
+	private byte[] modified(int index) {
+		byte[] copy = data.clone();
+		copy[index]++;
+		return copy;
+	}
+
+	private List<Set<String>> findDuplicates(Path... directories) throws Exception {
+		if (directories.length == 0) {
+			directories = new Path[] { tempDir };
+		}
+
+		return finder.findDuplicates(directories).map(group -> group.stream()
+				.map(file -> tempDir.relativize(file.getFilePath()).toString()).collect(Collectors.toSet()))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testFindsDuplicates() throws Exception {
+		write("a", data);
+		write("sub/b", data);
+
+		List<Set<String>> duplicates = findDuplicates();
+
+		assertThat(duplicates.size(), is(1));
+		assertThat(duplicates.get(0), containsInAnyOrder("a", Paths.get("sub", "b").toString()));
+	}
+
+	@Test
+	public void testSameSampleDifferentMiddle() throws Exception {
+		write("a", data);
+		write("b", modified(FILE_SIZE / 2));
+
+		assertThat(findDuplicates().size(), is(0));
+	}
+
+	@Test
+	public void testDifferentHead() throws Exception {
+		write("a", data);
+		write("b", modified(0));
+
+		assertThat(findDuplicates().size(), is(0));
+	}
+
+	@Test
+	public void testDifferentTail() throws Exception {
+		write("a", data);
+		write("b", modified(FILE_SIZE - 1));
+
+		assertThat(findDuplicates().size(), is(0));
+	}
+
+	@Test
+	public void testMultipleGroups() throws Exception {
+		write("a", data);
+		write("b", data);
+		write("c", modified(FILE_SIZE / 2));
+		write("d", modified(FILE_SIZE / 2));
+		write("e", new byte[] { 1, 2, 3 });
+
+		List<Set<String>> duplicates = findDuplicates();
+
+		assertThat(duplicates, containsInAnyOrder(containsInAnyOrder("a", "b"), containsInAnyOrder("c", "d")));
+	}
+
+	@Test
+	public void testSmallFiles() throws Exception {
+		write("a", new byte[] { 1, 2, 3 });
+		write("b", new byte[] { 1, 2, 3 });
+		write("c", new byte[] { 1, 2, 4 });
+
+		List<Set<String>> duplicates = findDuplicates();
+
+		assertThat(duplicates, containsInAnyOrder(containsInAnyOrder("a", "b")));
+	}
+
+	@Test
+	public void testEmptyFilesSkipped() throws Exception {
+		write("a", new byte[0]);
+		write("b", new byte[0]);
+
+		assertThat(findDuplicates().size(), is(0));
+	}
+
+	@Test
+	public void testEmptyFilesIncluded() throws Exception {
+		write("a", new byte[0]);
+		write("b", new byte[0]);
+		finder.setMinimumSize(0);
+
+		assertThat(findDuplicates().size(), is(1));
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		write("a", data);
+		write("b", data);
+		write("c", data);
+		finder.setFilter((dir, name) -> !name.equals("c"));
+
+		assertThat(findDuplicates(), containsInAnyOrder(containsInAnyOrder("a", "b")));
+	}
+
+	@Test
+	public void testHashAndSizeSet() throws Exception {
+		write("a", data);
+		write("b", data);
+
+		List<FileInfo> group = finder.findDuplicates(tempDir).findFirst().get();
+
+		assertThat(group.get(0).getHashValue(), is(new HashMaker().digest(data)));
+		assertThat(group.get(0).getSize(), is((long) FILE_SIZE));
+	}
+
+	@Test
+	public void testParallelStream() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			write("a" + i, modified(i));
+			write("b" + i, modified(i));
+		}
+
+		assertThat(finder.findDuplicates(tempDir).parallel().count(), is(20L));
+	}
+
+	@Test
+	public void testSameDirectoryTwice() throws Exception {
+		write("a", data);
+
+		assertThat(findDuplicates(tempDir, tempDir), is(empty()));
+	}
+
+	@Test
+	public void testNestedDirectories() throws Exception {
+		write("a", data);
+		write("sub/b", data);
+
+		assertThat(findDuplicates(tempDir, tempDir.resolve("sub"), tempDir.resolve("sub/../sub")),
+				containsInAnyOrder(containsInAnyOrder("a", "sub/b")));
+	}
+
+	@Test
+	public void testUnreadableDirectoryIsSkipped() throws Exception {
+		write("a", data);
+		write("b", data);
+		write("locked/c", data);
+		Path locked = tempDir.resolve("locked");
+		Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+
+		try {
+			assumeFalse("Permissions are not enforced for this user", Files.isReadable(locked));
+
+			assertThat(findDuplicates(), containsInAnyOrder(containsInAnyOrder("a", "b")));
+		} finally {
+			Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSampleSize() {
+		new DuplicateFinder("SHA-256", 0);
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashCacheTest {
+	private static final HashValue HASH_1 = HashValue.fromHex("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815");
+	private static final HashValue HASH_2 = HashValue.fromHex("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB");
+
+	private Path tempDir;
+	private Path cacheFile;
+	private Path dataFile;
+	private HashCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("HashCacheTest");
+		cacheFile = tempDir.resolve("hashes.cache");
+		dataFile = tempDir.resolve("data");
+		Files.write(dataFile, new byte[] { 12, 45, 6, 12, 99 });
+
+		cache = new HashCache(cacheFile, "SHA-256");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		cache.close();
+	}
+
+	private BasicFileAttributes attributes() throws IOException {
+		return Files.readAttributes(dataFile, BasicFileAttributes.class);
+	}
+
+	private HashCache reopen() throws IOException {
+		cache.close();
+		cache = new HashCache(cacheFile, "SHA-256");
+		return cache;
+	}
+
+	@Test
+	public void testGetMissing() throws Exception {
+		assertNull(cache.get(dataFile, attributes()));
+	}
+
+	@Test
+	public void testPutGet() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+
+		assertThat(cache.get(dataFile, attributes()), is(HASH_1));
+	}
+
+	@Test
+	public void testGetRelativePath() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+
+		Path relative = tempDir.toAbsolutePath().getParent().relativize(dataFile.toAbsolutePath());
+		Path viaParent = tempDir.toAbsolutePath().getParent().resolve("x").resolve("..").resolve(relative);
+
+		assertThat(cache.get(viaParent, attributes()), is(HASH_1));
+	}
+
+	@Test
+	public void testModifiedFileIsNotReturned() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+		Files.setLastModifiedTime(dataFile, FileTime.fromMillis(attributes().lastModifiedTime().toMillis() - 10000));
+
+		assertNull(cache.get(dataFile, attributes()));
+	}
+
+	@Test
+	public void testResizedFileIsNotReturned() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+		FileTime modified = attributes().lastModifiedTime();
+		Files.write(dataFile, new byte[] { 1 }, StandardOpenOption.APPEND);
+		Files.setLastModifiedTime(dataFile, modified);
+
+		assertNull(cache.get(dataFile, attributes()));
+	}
+
+	@Test
+	public void testPersisted() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_1));
+	}
+
+	@Test
+	public void testLatestRecordWins() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+		cache.put(dataFile, attributes(), HASH_2);
+
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_2));
+		assertThat(cache.size(), is(1));
+	}
+
+	@Test
+	public void testCompact() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			cache.put(dataFile, attributes(), i % 2 == 0 ? HASH_1 : HASH_2);
+		}
+
+		cache.flush();
+		long sizeBefore = Files.size(cacheFile);
+		cache.compact();
+
+		assertThat(Files.size(cacheFile), is(lessThan(sizeBefore)));
+		assertThat(cache.get(dataFile, attributes()), is(HASH_2));
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_2));
+	}
+
+	@Test
+	public void testAppendAfterCompact() throws Exception {
+		cache.compact();
+		cache.put(dataFile, attributes(), HASH_1);
+
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_1));
+	}
+
+	@Test
+	public void testIncompleteRecordIsDiscarded() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+		cache.close();
+		Files.write(cacheFile, new byte[] { 0, 20, 47 }, StandardOpenOption.APPEND);
+
+		cache = new HashCache(cacheFile, "SHA-256");
+		assertThat(cache.get(dataFile, attributes()), is(HASH_1));
+
+		cache.put(dataFile, attributes(), HASH_2);
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_2));
+	}
+
+	@Test
+	public void testMalformedRecordIsDiscarded() throws Exception {
+		cache.put(dataFile, attributes(), HASH_1);
+		cache.close();
+		// a path of two bytes that are not valid modified UTF-8, followed by more data
+		Files.write(cacheFile, new byte[] { 0, 2, (byte) 0xC0, 0x20, 1, 2, 3, 4, 5, 6, 7, 8 },
+				StandardOpenOption.APPEND);
+		long validLength = Files.size(cacheFile) - 12;
+
+		cache = new HashCache(cacheFile, "SHA-256");
+		assertThat(cache.get(dataFile, attributes()), is(HASH_1));
+		assertThat(Files.size(cacheFile), is(validLength));
+
+		cache.put(dataFile, attributes(), HASH_2);
+		assertThat(reopen().get(dataFile, attributes()), is(HASH_2));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDifferentAlgorithm() throws Exception {
+		cache.close();
+		new HashCache(cacheFile, "MD5");
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotACache() throws Exception {
+		new HashCache(dataFile, "SHA-256");
+	}
+
+	@Test
+	public void testGetAlgorithm() throws Exception {
+		assertThat(cache.getAlgorithm(), is("SHA-256"));
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashJobTest {
+	private HashJob job;
+
+	@Before
+	public void setUp() throws Exception {
+		job = new HashJob();
+	}
+
+	@Test
+	public void testNotDoneWhileWalking() {
+		job.fileQueued();
+		job.fileDone(10);
+
+		assertFalse(job.isDone());
+	}
+
+	@Test
+	public void testNotDoneWithPendingFiles() {
+		job.fileQueued();
+		job.fileQueued();
+		job.fileDone(10);
+		job.walkFinished();
+
+		assertFalse(job.isDone());
+	}
+
+	@Test
+	public void testDoneAfterLastFile() throws Exception {
+		job.fileQueued();
+		job.fileQueued();
+		job.walkFinished();
+		job.fileDone(10);
+		job.fileFailed();
+
+		assertTrue(job.isDone());
+		assertThat(job.getCompletion().get(), is(sameInstance(job)));
+	}
+
+	@Test
+	public void testDoneAfterWalk() {
+		job.fileQueued();
+		job.fileDone(10);
+		job.walkFinished();
+
+		assertTrue(job.isDone());
+	}
+
+	@Test
+	public void testEmptyWalk() {
+		job.walkFinished();
+
+		assertTrue(job.isDone());
+	}
+
+	@Test
+	public void testCounters() {
+		job.fileQueued();
+		job.fileQueued();
+		job.fileQueued();
+		job.fileDone(10);
+		job.fileDone(0);
+		job.fileFailed();
+
+		assertThat(job.getFilesQueued(), is(3L));
+		assertThat(job.getFilesDone(), is(2L));
+		assertThat(job.getFilesFailed(), is(1L));
+		assertThat(job.getBytesHashed(), is(10L));
+	}
+
+	@Test
+	public void testThroughput() throws Exception {
+		job.fileQueued();
+		Thread.sleep(5);
+		job.fileDone(1024 * 1024);
+
+		assertThat(job.getMegabytesPerSecond(), is(greaterThan(0.0)));
+	}
+
+	@Test
+	public void testCurrentThroughputSteady() throws Exception {
+		long now = System.nanoTime();
+
+		// 1 MB every 100 ms for a minute
+		for (int i = 0; i < 600; i++) {
+			now += TimeUnit.MILLISECONDS.toNanos(100);
+			job.addRateSample(1024 * 1024, now);
+		}
+
+		assertThat(job.getCurrentMegabytesPerSecond(now), is(closeTo(10.0, 0.5)));
+	}
+
+	@Test
+	public void testCurrentThroughputDropsOnStall() throws Exception {
+		long now = System.nanoTime();
+
+		for (int i = 0; i < 600; i++) {
+			now += TimeUnit.MILLISECONDS.toNanos(100);
+			job.addRateSample(1024 * 1024, now);
+		}
+
+		now += TimeUnit.SECONDS.toNanos(20);
+
+		assertThat(job.getCurrentMegabytesPerSecond(now), is(lessThan(0.5)));
+	}
+
+	@Test
+	public void testCurrentThroughput() throws Exception {
+		job.fileQueued();
+		job.fileDone(1024 * 1024);
+
+		assertThat(job.getCurrentMegabytesPerSecond(), is(greaterThan(0.0)));
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void testWalkFailed() throws Exception {
+		job.walkFailed(new IOException("test"));
+
+		assertTrue(job.isDone());
+		job.getCompletion().get();
+	}
+}
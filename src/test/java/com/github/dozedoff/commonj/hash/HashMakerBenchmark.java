@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares buffered and memory mapped hashing for a range of file sizes, to pick
+ * {@link HashMaker#setMappedThreshold(long)} for the target hardware. Not a unit test, run the main method. The files
+ * are hashed repeatedly, so the numbers reflect files held in the page cache.
+ */
+public class HashMakerBenchmark {
+	private static final long[] FILE_SIZES = { 64 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024,
+			64 * 1024 * 1024, 256 * 1024 * 1024 };
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws IOException {
+		String algorithm = args.length > 0 ? args[0] : "SHA-256";
+		Path tempDir = Files.createTempDirectory("HashMakerBenchmark");
+
+		System.out.println(String.format("%12s %16s %16s", "size", "buffered MB/s", "mapped MB/s"));
+
+		try {
+			for (long size : FILE_SIZES) {
+				Path file = createFile(tempDir, size);
+
+				double buffered = measure(file, algorithm, Long.MAX_VALUE);
+				double mapped = measure(file, algorithm, 0);
+
+				System.out.println(String.format("%12d %16.1f %16.1f", size, buffered, mapped));
+				Files.delete(file);
+			}
+		} finally {
+			Files.deleteIfExists(tempDir);
+		}
+	}
+
+	private static double measure(Path file, String algorithm, long mappedThreshold) throws IOException {
+		HashMaker hashMaker = new HashMaker(algorithm);
+		hashMaker.setMappedThreshold(mappedThreshold);
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			hashMaker.hashFile(file);
+		}
+
+		long start = System.nanoTime();
+
+		for (int i = 0; i < ROUNDS; i++) {
+			hashMaker.hashFile(file);
+		}
+
+		double seconds = (System.nanoTime() - start) / 1E9;
+		double megabytes = (Files.size(file) * (double) ROUNDS) / (1024 * 1024);
+
+		return megabytes / seconds;
+	}
+
+	private static Path createFile(Path directory, long size) throws IOException {
+		Path file = directory.resolve("bench-" + size);
+		byte[] block = new byte[1024 * 1024];
+		new Random(size).nextBytes(block);
+
+		try (OutputStream os = Files.newOutputStream(file)) {
+			for (long written = 0; written < size; written += block.length) {
+				os.write(block, 0, (int) Math.min(block.length, size - written));
+			}
+		}
+
+		return file;
+	}
+}
@@ -6,18 +6,35 @@
 package com.github.dozedoff.commonj.hash;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.primitives.Bytes;
+
 public class HashMakerTest {
 	private byte[] testData = { 12, 45, 6, 12, 99 }; // SHA-256: 95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815
 	private byte[] testData2 = { 99, 21, 6, 45, 12 }; // SHA-256: 20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB
@@ -95,4 +112,361 @@ public class HashMakerTest {
 	public void testInvalidAlgorithm() {
 		hm = new HashMaker("notValid");
 	}
+
+	@Test
+	public void testDigestFile() throws Exception {
+		assertThat(hm.digestFile(testFile2), is(HashValue.fromHex("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB")));
+	}
+
+	@Test
+	public void testDigestFileMissing() throws Exception {
+		assertNull(hm.digestFile(Paths.get("fooBar")));
+	}
+
+	@Test
+	public void testDigestNull() throws Exception {
+		assertNull(hm.digest(null));
+	}
+
+	@Test
+	public void testDigestStream() throws Exception {
+		assertThat(hm.digestStream(new ByteArrayInputStream(testData)), is(hm.digest(testData)));
+	}
+
+	@Test
+	public void testHashFileMapped() throws Exception {
+		hm.setMappedThreshold(0);
+
+		assertThat(hm.hashFile(testFile), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+	}
+
+	@Test
+	public void testHashFileMappedEmpty() throws Exception {
+		hm.setMappedThreshold(0);
+
+		assertThat(hm.hashFile(testFile3), is("E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855"));
+	}
+
+	@Test
+	public void testGetMappedThreshold() throws Exception {
+		hm.setMappedThreshold(42);
+
+		assertThat(hm.getMappedThreshold(), is(42L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeMappedThreshold() {
+		hm.setMappedThreshold(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBufferSize() {
+		new HashMaker("SHA-256", 0);
+	}
+
+	@Test
+	public void testHashStream() throws Exception {
+		assertThat(hm.hashStream(new ByteArrayInputStream(testData)), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+	}
+
+	@Test
+	public void testHashEmptyStream() throws Exception {
+		assertThat(hm.hashStream(new ByteArrayInputStream(testData3)), is("E3B0C44298FC1C149AFBF4C8996FB92427AE41E4649B934CA495991B7852B855"));
+	}
+
+	@Test
+	public void testHashChannel() throws Exception {
+		assertThat(hm.hashChannel(Channels.newChannel(new ByteArrayInputStream(testData2))),
+				is("20FC038E00E13585E68E7EBE50D79CBE7D476A74D8FDE71872627DA6CD8FC8BB"));
+	}
+
+	@Test
+	public void testHashStreamLargerThanBuffer() throws Exception {
+		byte[] data = new byte[10000];
+		Arrays.fill(data, (byte) 42);
+
+		hm = new HashMaker("SHA-256", 7);
+
+		assertThat(hm.hashStream(new ByteArrayInputStream(data)), is(new HashMaker().hash(data)));
+	}
+
+	@Test
+	public void testHashStreamSameBufferReused() throws Exception {
+		hm = new HashMaker("SHA-256", 2);
+
+		hm.hashStream(new ByteArrayInputStream(testData2));
+
+		assertThat(hm.hashStream(new ByteArrayInputStream(testData)), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+	}
+
+	@Test
+	public void testDigestResetAfterReadError() throws Exception {
+		try {
+			hm.hashStream(new FailingInputStream());
+		} catch (IOException e) {
+			// expected
+		}
+
+		assertThat(hm.hash(testData), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+	}
+
+	private static class FailingInputStream extends InputStream {
+		private int count;
+
+		@Override
+		public int read() throws IOException {
+			if (count++ > 3) {
+				throw new IOException("Read failed");
+			}
+
+			return 1;
+		}
+	}
+
+	private Path createAppendFile(byte[] data) throws IOException {
+		Path file = Files.createTempFile("HashMakerTest", ".log");
+		Files.write(file, data);
+		return file;
+	}
+
+	private static byte[] randomBytes(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	@Test
+	public void testDigestFileState() throws Exception {
+		Path file = createAppendFile(randomBytes(10000, 1));
+
+		DigestState state = hm.digestFile(file, null);
+
+		assertThat(state.getHash(), is(hm.digestFile(file)));
+		assertThat(state.getLength(), is(10000L));
+		assertThat(state.isResumable(), is(true));
+	}
+
+	@Test
+	public void testDigestFileResumeAfterAppend() throws Exception {
+		Path file = createAppendFile(randomBytes(10000, 1));
+		DigestState state = hm.digestFile(file, null);
+
+		Files.write(file, randomBytes(20000, 2), StandardOpenOption.APPEND);
+		DigestState resumed = hm.digestFile(file, state);
+
+		assertThat(resumed.getHash(), is(hm.digestFile(file)));
+		assertThat(resumed.getLength(), is(30000L));
+	}
+
+	@Test
+	public void testDigestFileResumeTwice() throws Exception {
+		Path file = createAppendFile(randomBytes(10000, 1));
+		DigestState state = hm.digestFile(file, null);
+
+		Files.write(file, randomBytes(100, 2), StandardOpenOption.APPEND);
+		DigestState first = hm.digestFile(file, state);
+		DigestState second = hm.digestFile(file, state);
+
+		assertThat(second.getHash(), is(first.getHash()));
+	}
+
+	@Test
+	public void testDigestFileResumeReadsOnlyAppendedData() throws Exception {
+		byte[] data = randomBytes(10000, 1);
+		Path file = createAppendFile(data);
+		DigestState state = hm.digestFile(file, null);
+
+		// a change before the checked tail is not noticed, which shows that only the appended data is read
+		data[0]++;
+		byte[] appended = randomBytes(100, 2);
+		Files.write(file, Bytes.concat(data, appended));
+		data[0]--;
+
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digest(Bytes.concat(data, appended))));
+	}
+
+	@Test
+	public void testDigestFileGrowsWhileHashing() throws Exception {
+		byte[] data = randomBytes(10000, 1);
+		byte[] appended = randomBytes(5000, 2);
+		Path file = createAppendFile(data);
+		DigestState state;
+
+		try (FileChannel channel = new GrowingChannel(FileChannel.open(file, StandardOpenOption.READ), file, appended)) {
+			state = hm.digestChannel(channel, null, null);
+		}
+
+		assertThat(state.getLength(), is(10000L));
+		assertThat(state.getHash(), is(hm.digest(data)));
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digest(Bytes.concat(data, appended))));
+	}
+
+	/**
+	 * Appends to the file on the first read, after the size has been checked.
+	 */
+	private static class GrowingChannel extends FileChannel {
+		private final FileChannel delegate;
+		private final Path file;
+		private byte[] appended;
+
+		GrowingChannel(FileChannel delegate, Path file, byte[] appended) {
+			this.delegate = delegate;
+			this.file = file;
+			this.appended = appended;
+		}
+
+		private void grow() throws IOException {
+			if (appended != null) {
+				Files.write(file, appended, StandardOpenOption.APPEND);
+				appended = null;
+			}
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			grow();
+			return delegate.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			grow();
+			return delegate.read(dsts, offset, length);
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return delegate.read(dst, position);
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return delegate.write(src);
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			return delegate.write(srcs, offset, length);
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			return delegate.write(src, position);
+		}
+
+		@Override
+		public long position() throws IOException {
+			return delegate.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			delegate.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return delegate.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			delegate.truncate(size);
+			return this;
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			delegate.force(metaData);
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return delegate.transferTo(position, count, target);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			return delegate.transferFrom(src, position, count);
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return delegate.map(mode, position, size);
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return delegate.lock(position, size, shared);
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return delegate.tryLock(position, size, shared);
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			delegate.close();
+		}
+	}
+
+	@Test
+	public void testDigestFileUnchanged() throws Exception {
+		Path file = createAppendFile(randomBytes(10000, 1));
+		DigestState state = hm.digestFile(file, null);
+
+		assertThat(hm.digestFile(file, state), is(sameInstance(state)));
+	}
+
+	@Test
+	public void testDigestFileTailRewritten() throws Exception {
+		byte[] data = randomBytes(10000, 1);
+		Path file = createAppendFile(data);
+		DigestState state = hm.digestFile(file, null);
+
+		data[data.length - 1]++;
+		Files.write(file, Bytes.concat(data, randomBytes(100, 2)));
+
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digestFile(file)));
+	}
+
+	@Test
+	public void testDigestFileTruncated() throws Exception {
+		byte[] data = randomBytes(10000, 1);
+		Path file = createAppendFile(data);
+		DigestState state = hm.digestFile(file, null);
+
+		Files.write(file, Arrays.copyOf(data, 5000));
+
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digestFile(file)));
+	}
+
+	@Test
+	public void testDigestFileOtherAlgorithm() throws Exception {
+		Path file = createAppendFile(randomBytes(10000, 1));
+		DigestState state = new HashMaker("MD5").digestFile(file, null);
+
+		Files.write(file, randomBytes(100, 2), StandardOpenOption.APPEND);
+
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digestFile(file)));
+	}
+
+	@Test
+	public void testDigestFileNotResumable() throws Exception {
+		hm = new HashMaker(Digests.CRC32);
+		Path file = createAppendFile(randomBytes(10000, 1));
+		DigestState state = hm.digestFile(file, null);
+
+		Files.write(file, randomBytes(100, 2), StandardOpenOption.APPEND);
+
+		assertThat(state.isResumable(), is(false));
+		assertThat(hm.digestFile(file, state).getHash(), is(hm.digestFile(file)));
+	}
+
+	@Test
+	public void testDigestFileStateMissingFile() throws Exception {
+		assertNull(hm.digestFile(Paths.get("foo"), null));
+	}
 }
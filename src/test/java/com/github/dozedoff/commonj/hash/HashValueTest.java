@@ -0,0 +1,133 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashValueTest {
+	private static final String HEX = "95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815";
+
+	private byte[] bytes = { 12, 45, 6, -1, 99 };
+	private HashValue hashValue;
+
+	@Before
+	public void setUp() throws Exception {
+		hashValue = HashValue.of(bytes);
+	}
+
+	@Test
+	public void testOfCopiesArray() {
+		bytes[0] = 0;
+
+		assertThat(hashValue.getBytes()[0], is((byte) 12));
+	}
+
+	@Test
+	public void testGetBytesReturnsCopy() {
+		hashValue.getBytes()[0] = 0;
+
+		assertThat(hashValue.getBytes()[0], is((byte) 12));
+	}
+
+	@Test
+	public void testLength() {
+		assertThat(hashValue.length(), is(5));
+	}
+
+	@Test
+	public void testToHex() {
+		assertThat(hashValue.toHex(), is("0C2D06FF63"));
+	}
+
+	@Test
+	public void testToString() {
+		assertThat(hashValue.toString(), is("0C2D06FF63"));
+	}
+
+	@Test
+	public void testFromHex() {
+		assertThat(HashValue.fromHex(HEX).toHex(), is(HEX));
+	}
+
+	@Test
+	public void testFromHexLowerCase() {
+		assertThat(HashValue.fromHex(HEX.toLowerCase()), is(HashValue.fromHex(HEX)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFromHexNull() {
+		HashValue.fromHex(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOfNull() {
+		HashValue.of(null);
+	}
+
+	@Test
+	public void testEquals() {
+		assertThat(hashValue, is(HashValue.of(new byte[] { 12, 45, 6, -1, 99 })));
+	}
+
+	@Test
+	public void testNotEquals() {
+		assertThat(hashValue, is(not(HashValue.of(new byte[] { 12, 45, 6, -1, 98 }))));
+	}
+
+	@Test
+	public void testNotEqualsOtherType() {
+		assertThat(hashValue.equals("0C2D06FF63"), is(false));
+	}
+
+	@Test
+	public void testHashCodeEqual() {
+		assertThat(hashValue.hashCode(), is(HashValue.of(new byte[] { 12, 45, 6, -1, 99 }).hashCode()));
+	}
+
+	@Test
+	public void testHashCodeShortValue() {
+		assertThat(HashValue.of(new byte[] { 1, 2 }).hashCode(), is(HashValue.of(new byte[] { 1, 2 }).hashCode()));
+	}
+
+	@Test
+	public void testCompareUnsigned() {
+		assertThat(HashValue.fromHex("7F").compareTo(HashValue.fromHex("80")), is(lessThan(0)));
+	}
+
+	@Test
+	public void testCompareEqual() {
+		assertThat(hashValue.compareTo(HashValue.fromHex("0C2D06FF63")), is(0));
+	}
+
+	@Test
+	public void testComparePrefix() {
+		assertThat(hashValue.compareTo(HashValue.fromHex("0C2D06")), is(greaterThan(0)));
+	}
+
+	@Test
+	public void testDigestMatchesHash() {
+		HashMaker hashMaker = new HashMaker();
+
+		assertThat(hashMaker.digest(new byte[] { 12, 45, 6, 12, 99 }), is(HashValue.fromHex(HEX)));
+	}
+
+	@Test
+	public void testPrefix() {
+		assertThat(HashValue.fromHex("0102030405060708FF").prefix(), is(0x0102030405060708L));
+	}
+
+	@Test
+	public void testPrefixShortHash() {
+		assertThat(HashValue.fromHex("0102").prefix(), is(0x0102000000000000L));
+	}
+}
@@ -16,6 +16,11 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 
@@ -23,6 +28,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.github.dozedoff.commonj.helper.DctStrategy;
 import com.github.dozedoff.commonj.util.ImageUtil;
 
 public class ImagePHashTest {
@@ -64,6 +70,22 @@ public class ImagePHashTest {
 		assertThat(normal, is(-6261023631344080447L));
 	}
 
+	@Test
+	public void testSourceImageHashFastDct() throws Exception {
+		iph = new ImagePHash(32, 8, DctStrategy.FAST);
+		long normal = hashImage(testImageJPG);
+
+		assertThat(normal, is(-6261023631344080447L));
+	}
+
+	@Test
+	public void testSourceImageHashNaiveDct() throws Exception {
+		iph = new ImagePHash(32, 8, DctStrategy.NAIVE);
+		long normal = hashImage(testImageJPG);
+
+		assertThat(normal, is(-6261023631344080447L));
+	}
+
 	@Test
 	public void testSourceImageHashPNG() throws Exception {
 		long normal = hashImage(testImagePNG);
@@ -130,6 +152,72 @@ public class ImagePHashTest {
 		assertThat(hash, is(-6261023631344080447L));
 	}
 
+	@Test
+	public void testDirectLuminanceDistance() throws Exception {
+		Path[] images = { testImageJPG, testImagePNG, testImageGIF, testImageBMP, testImagePNGtr, testImageGIFtr, testImageSmallJPG };
+		ImagePHash direct = new ImagePHash();
+		direct.setDirectLuminance(true);
+
+		for (Path image : images) {
+			long converted = hashImage(image);
+			long luminance = direct.getLongHash(new BufferedInputStream(Files.newInputStream(image)));
+			assertThat(getHammingDistance(converted, luminance), lessThanOrEqualTo(2));
+		}
+	}
+
+	@Test
+	public void testAreaAveragingDistance() throws Exception {
+		Path[] images = { testImageJPG, testImagePNG, testImageGIF, testImageBMP, testImagePNGtr, testImageGIFtr, testImageSmallJPG };
+		ImagePHash fused = new ImagePHash();
+		fused.setAreaAveraging(true);
+
+		for (Path image : images) {
+			long converted = hashImage(image);
+			long averaged = fused.getLongHash(new BufferedInputStream(Files.newInputStream(image)));
+			assertThat(getHammingDistance(converted, averaged), lessThanOrEqualTo(4));
+		}
+	}
+
+	@Test
+	public void testAreaAveragingScaledSourceImage() throws Exception {
+		iph.setAreaAveraging(true);
+		long normal = hashImage(testImageJPG);
+		long scaled = hashImage(testImageSmallJPG);
+
+		assertThat(getHammingDistance(normal, scaled), lessThanOrEqualTo(4));
+	}
+
+	@Test
+	public void testReuseBetweenImages() throws Exception {
+		long normal = hashImage(testImageJPG);
+		long scaled = hashImage(testImageSmallJPG);
+		long transparent = hashImage(testImagePNGtr);
+
+		assertThat(hashImage(testImageJPG), is(normal));
+		assertThat(hashImage(testImageSmallJPG), is(scaled));
+		assertThat(hashImage(testImagePNGtr), is(transparent));
+	}
+
+	@Test
+	public void testConcurrentHashing() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Long>> hashes = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < 16; i++) {
+				Path image = i % 2 == 0 ? testImageJPG : testImageSmallJPG;
+				hashes.add(executor.submit(() -> hashImage(image)));
+			}
+
+			for (int i = 0; i < hashes.size(); i++) {
+				long expected = i % 2 == 0 ? -6261023631344080447L : -6261023624918439487L;
+				assertThat(hashes.get(i).get(), is(expected));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private int getHammingDistance(long a, long b) {
 		long xor = a ^ b;
 		int distance = Long.bitCount(xor);
@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LongIntTableTest {
+	private LongIntTable cut;
+
+	@Before
+	public void setUp() throws Exception {
+		cut = new LongIntTable();
+	}
+
+	@Test
+	public void testGetMissing() throws Exception {
+		assertThat(cut.get(42), is(0));
+	}
+
+	@Test
+	public void testAdd() throws Exception {
+		cut.add(42, 1);
+		cut.add(42, 2);
+
+		assertThat(cut.get(42), is(3));
+		assertThat(cut.size(), is(1));
+	}
+
+	@Test
+	public void testRemoveAtZero() throws Exception {
+		cut.add(42, 1);
+		cut.add(42, -1);
+
+		assertThat(cut.get(42), is(0));
+		assertThat(cut.size(), is(0));
+	}
+
+	@Test
+	public void testZeroKey() throws Exception {
+		cut.add(0, 2);
+
+		assertThat(cut.get(0), is(2));
+		assertThat(cut.size(), is(1));
+
+		cut.add(0, -2);
+
+		assertThat(cut.size(), is(0));
+	}
+
+	@Test
+	public void testMatchesHashMap() throws Exception {
+		Map<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 100000; i++) {
+			// small key range to get collisions and removals
+			long key = random.nextInt(5000) * 0x100000001L;
+			int delta = random.nextBoolean() || !expected.containsKey(key) ? 1 : -1;
+
+			cut.add(key, delta);
+			expected.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+		}
+
+		for (Entry<Long, Integer> entry : expected.entrySet()) {
+			assertThat(cut.get(entry.getKey()), is(entry.getValue()));
+		}
+
+		assertThat(cut.size(), is(expected.size()));
+	}
+}
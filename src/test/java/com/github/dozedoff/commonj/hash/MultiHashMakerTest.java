@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class MultiHashMakerTest {
+	private static final byte[] CHECK_DATA = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+	private byte[] testData = { 12, 45, 6, 12, 99 }; // SHA-256: 95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815
+
+	private static Path testFile;
+
+	private MultiHashMaker mhm;
+
+	@BeforeClass
+	public static void classSetup() throws URISyntaxException {
+		testFile = Paths.get(Thread.currentThread().getContextClassLoader().getResource("test1").toURI());
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		mhm = new MultiHashMaker("SHA-256", "MD5", Digests.CRC32C);
+	}
+
+	@Test
+	public void testResultOrder() {
+		assertThat(mhm.hash(testData).keySet(), contains("SHA-256", "MD5", Digests.CRC32C));
+	}
+
+	@Test
+	public void testHash() {
+		Map<String, String> hashes = mhm.hash(testData);
+
+		assertThat(hashes.get("SHA-256"), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+		assertThat(hashes.get("MD5"), is(new HashMaker("MD5").hash(testData)));
+	}
+
+	@Test
+	public void testHashNull() {
+		assertNull(mhm.hash(null));
+	}
+
+	@Test
+	public void testDigest() {
+		Map<String, HashValue> hashes = mhm.digest(testData);
+
+		assertThat(hashes.keySet(), contains("SHA-256", "MD5", Digests.CRC32C));
+		assertThat(hashes.get("SHA-256"),
+				is(HashValue.fromHex("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815")));
+		assertThat(hashes.get("MD5"), is(new HashMaker("MD5").digest(testData)));
+	}
+
+	@Test
+	public void testDigestNull() {
+		assertNull(mhm.digest(null));
+	}
+
+	@Test
+	public void testChecksums() {
+		mhm = new MultiHashMaker(Digests.CRC32, Digests.CRC32C, Digests.ADLER32);
+		Map<String, String> hashes = mhm.hash(CHECK_DATA);
+
+		assertThat(hashes.get(Digests.CRC32), is("CBF43926"));
+		assertThat(hashes.get(Digests.CRC32C), is("E3069283"));
+		assertThat(hashes.get(Digests.ADLER32), is("091E01DE"));
+	}
+
+	@Test
+	public void testHashFile() {
+		assertThat(mhm.hashFile(testFile).get("SHA-256"), is("95F6A79D2199FC2CFA8F73C315AA16B33BF3544C407B4F9B29889333CA0DB815"));
+	}
+
+	@Test
+	public void testHashFileMissing() {
+		assertNull(mhm.hashFile(Paths.get("fooBar")));
+	}
+
+	@Test
+	public void testDigestFile() {
+		assertThat(mhm.digestFile(testFile), is(mhm.digest(testData)));
+	}
+
+	@Test
+	public void testHashFileMappedMatchesBuffered() throws Exception {
+		byte[] data = new byte[100000];
+		new Random(42).nextBytes(data);
+		Path file = Files.createTempFile("MultiHashMakerTest", null);
+
+		try {
+			Files.write(file, data);
+			mhm = new MultiHashMaker(1000, "SHA-256", "MD5", Digests.CRC32C);
+			Map<String, String> buffered = mhm.hashFile(file);
+
+			mhm.setMappedThreshold(0);
+
+			assertThat(mhm.hashFile(file), is(buffered));
+			assertThat(buffered, is(mhm.hash(data)));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testHashStream() throws Exception {
+		assertThat(mhm.hashStream(new ByteArrayInputStream(testData)), is(mhm.hash(testData)));
+	}
+
+	@Test
+	public void testDigestStream() throws Exception {
+		assertThat(mhm.digestStream(new ByteArrayInputStream(testData)), is(mhm.digest(testData)));
+	}
+
+	@Test
+	public void testHashChannel() throws Exception {
+		assertThat(mhm.hashChannel(Channels.newChannel(new ByteArrayInputStream(CHECK_DATA))), is(mhm.hash(CHECK_DATA)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoAlgorithm() {
+		new MultiHashMaker();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAlgorithm() {
+		new MultiHashMaker("SHA-256", "notValid");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateAlgorithm() {
+		new MultiHashMaker("MD5", "md5");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBufferSize() {
+		new MultiHashMaker(0, "MD5");
+	}
+
+	@Test
+	public void testChecksumInHashMaker() {
+		assertThat(new HashMaker(Digests.CRC32).hash(CHECK_DATA), is("CBF43926"));
+	}
+
+	@Test
+	public void testChecksumInConcurrentHashMaker() {
+		assertThat(new ConcurrentHashMaker(Digests.CRC32C).hash(CHECK_DATA), is("E3069283"));
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThrottleTest {
+	private static final int TEST_TIMEOUT = 5000;
+
+	private Throttle cut;
+
+	@Before
+	public void setUp() throws Exception {
+		cut = new Throttle();
+	}
+
+	private long timeMillis(Runnable runnable) {
+		long start = System.nanoTime();
+		runnable.run();
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+
+	private void acquireBytes(long count, int times) {
+		try {
+			for (int i = 0; i < times; i++) {
+				cut.acquireBytes(count);
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testUnlimited() throws Exception {
+		assertThat(timeMillis(() -> acquireBytes(Long.MAX_VALUE / 4, 3)), is(lessThan(100L)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testBytesLimited() throws Exception {
+		cut.setBytesPerSecond(10000);
+
+		assertThat(timeMillis(() -> acquireBytes(5000, 3)), is(greaterThanOrEqualTo(1000L)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testFilesLimited() throws Exception {
+		cut.setFilesPerSecond(10);
+
+		long elapsed = timeMillis(() -> {
+			try {
+				for (int i = 0; i < 6; i++) {
+					cut.acquireFile();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		assertThat(elapsed, is(greaterThanOrEqualTo(400L)));
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void testLimitRemoved() throws Exception {
+		cut.setBytesPerSecond(10000);
+		cut.setBytesPerSecond(0);
+
+		assertThat(timeMillis(() -> acquireBytes(100000, 3)), is(lessThan(100L)));
+	}
+
+	@Test
+	public void testConstructorLimits() throws Exception {
+		cut = new Throttle(42, 7);
+
+		assertThat(cut.getBytesPerSecond(), is(42L));
+		assertThat(cut.getFilesPerSecond(), is(7L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeRate() throws Exception {
+		cut.setBytesPerSecond(-1);
+	}
+}
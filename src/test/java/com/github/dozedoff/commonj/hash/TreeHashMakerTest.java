@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.hash;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TreeHashMakerTest {
+	private static final int CHUNK_SIZE = 1000;
+
+	private Path file;
+	private byte[] data;
+	private TreeHashMaker cut;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[2500];
+		new Random(42).nextBytes(data);
+
+		file = Files.createTempFile("TreeHashMakerTest", ".dat");
+		Files.write(file, data);
+
+		cut = new TreeHashMaker("SHA-256", CHUNK_SIZE);
+	}
+
+	private static byte[] sha256(byte prefix, byte[]... parts) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(prefix);
+
+		for (byte[] part : parts) {
+			md.update(part);
+		}
+
+		return md.digest();
+	}
+
+	@Test
+	public void testChunkHashes() throws Exception {
+		TreeHash hash = cut.hashFile(file);
+
+		assertThat(hash.getChunkHashes().size(), is(3));
+		assertThat(hash.getChunkHashes().get(2).getBytes(),
+				is(sha256((byte) 0, Arrays.copyOfRange(data, 2000, 2500))));
+	}
+
+	@Test
+	public void testRootHash() throws Exception {
+		byte[] leaf0 = sha256((byte) 0, Arrays.copyOfRange(data, 0, 1000));
+		byte[] leaf1 = sha256((byte) 0, Arrays.copyOfRange(data, 1000, 2000));
+		byte[] leaf2 = sha256((byte) 0, Arrays.copyOfRange(data, 2000, 2500));
+		byte[] node = sha256((byte) 1, leaf0, leaf1);
+		byte[] root = sha256((byte) 1, node, leaf2);
+
+		assertThat(cut.hashFile(file).getRoot().getBytes(), is(root));
+	}
+
+	@Test
+	public void testSingleChunk() throws Exception {
+		cut = new TreeHashMaker("SHA-256", 4096);
+
+		assertThat(cut.hashFile(file).getRoot().getBytes(), is(sha256((byte) 0, data)));
+	}
+
+	@Test
+	public void testEmptyFile() throws Exception {
+		TreeHash hash = cut.hashFile(Files.createTempFile("TreeHashMakerTest", ".empty"));
+
+		assertThat(hash.getChunkHashes().size(), is(1));
+		assertThat(hash.getRoot().getBytes(), is(sha256((byte) 0)));
+	}
+
+	@Test
+	public void testLength() throws Exception {
+		assertThat(cut.hashFile(file).getLength(), is(2500L));
+	}
+
+	@Test
+	public void testParallelMatchesSingleThread() throws Exception {
+		data = new byte[CHUNK_SIZE * 37 + 11];
+		new Random(7).nextBytes(data);
+		Files.write(file, data);
+
+		TreeHash parallel = new TreeHashMaker("SHA-256", CHUNK_SIZE, new ForkJoinPool(4)).hashFile(file);
+		TreeHash single = new TreeHashMaker("SHA-256", CHUNK_SIZE, new ForkJoinPool(1)).hashFile(file);
+
+		assertThat(parallel.getRoot(), is(single.getRoot()));
+		assertThat(parallel.getChunkHashes(), is(single.getChunkHashes()));
+	}
+
+	@Test
+	public void testVerifyUnchanged() throws Exception {
+		TreeHash expected = cut.hashFile(file);
+
+		assertThat(cut.verify(file, expected), is(empty()));
+	}
+
+	@Test
+	public void testVerifyFindsCorruptChunk() throws Exception {
+		TreeHash expected = cut.hashFile(file);
+
+		data[1500]++;
+		Files.write(file, data);
+
+		assertThat(cut.verify(file, expected), contains(1));
+	}
+
+	@Test
+	public void testVerifyAppendedChunk() throws Exception {
+		TreeHash expected = cut.hashFile(file);
+
+		Files.write(file, Arrays.copyOf(data, 3500));
+
+		assertThat(cut.verify(file, expected), contains(2, 3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testVerifyDifferentChunkSize() throws Exception {
+		TreeHash expected = new TreeHashMaker("SHA-256", 500).hashFile(file);
+
+		cut.verify(file, expected);
+	}
+
+	@Test
+	public void testOtherAlgorithm() throws Exception {
+		cut = new TreeHashMaker(Digests.XXH64, CHUNK_SIZE);
+
+		assertThat(cut.hashFile(file).getRoot().length(), is(8));
+	}
+
+	@Test(expected = NoSuchFileException.class)
+	public void testMissingFile() throws Exception {
+		cut.hashFile(Paths.get("foo"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChunkSize() throws Exception {
+		new TreeHashMaker("SHA-256", 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownAlgorithm() throws Exception {
+		new TreeHashMaker("foo", CHUNK_SIZE);
+	}
+}
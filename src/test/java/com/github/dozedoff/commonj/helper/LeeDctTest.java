@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.helper;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LeeDctTest {
+	private static final double EPSILON = 1e-9;
+
+	private static double[] reference(double[] vector) {
+		int n = vector.length;
+		double[] result = new double[n];
+
+		for (int k = 0; k < n; k++) {
+			for (int i = 0; i < n; i++) {
+				result[k] += vector[i] * Math.cos(Math.PI * (i + 0.5) * k / n);
+			}
+		}
+
+		return result;
+	}
+
+	@Test
+	public void testTransform() throws Exception {
+		Random random = new Random(42);
+
+		for (int length = 1; length <= 64; length *= 2) {
+			double[] vector = new double[length];
+
+			for (int i = 0; i < length; i++) {
+				vector[i] = random.nextInt(256);
+			}
+
+			double[] expected = reference(vector);
+			new LeeDct(length).transform(vector, new double[length]);
+
+			for (int k = 0; k < length; k++) {
+				assertThat(vector[k], is(closeTo(expected[k], EPSILON)));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotPowerOfTwo() throws Exception {
+		new LeeDct(12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroLength() throws Exception {
+		new LeeDct(0);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.helper;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformHelperTest {
+	private static final int MATRIX_SIZE = 32;
+	private static final double EPSILON = 1e-9;
+
+	private TransformHelper cut;
+	private double[][] matrix;
+
+	@Before
+	public void setUp() throws Exception {
+		cut = new TransformHelper(MATRIX_SIZE);
+		matrix = new double[MATRIX_SIZE][MATRIX_SIZE];
+		Random random = new Random(42);
+
+		for (int x = 0; x < MATRIX_SIZE; x++) {
+			for (int y = 0; y < MATRIX_SIZE; y++) {
+				matrix[x][y] = random.nextInt(256);
+			}
+		}
+	}
+
+	private static double maxDifference(double[][] a, double[][] b) {
+		double max = 0;
+
+		for (int x = 0; x < a.length; x++) {
+			for (int y = 0; y < a[x].length; y++) {
+				max = Math.max(max, Math.abs(a[x][y] - b[x][y]));
+			}
+		}
+
+		return max;
+	}
+
+	@Test
+	public void testTransformDCTMatchesNaive() throws Exception {
+		assertThat(maxDifference(cut.transformDCT(matrix), cut.transformDCTNaive(matrix)), is(lessThan(EPSILON)));
+	}
+
+	@Test
+	public void testTransformDCTNonSymmetric() throws Exception {
+		matrix[3][17] = 1000;
+
+		assertThat(maxDifference(cut.transformDCT(matrix), cut.transformDCTNaive(matrix)), is(lessThan(EPSILON)));
+	}
+
+	@Test
+	public void testTransformDCTSmallMatrix() throws Exception {
+		cut = new TransformHelper(8);
+		double[][] small = new double[8][8];
+		small[1][2] = 255;
+
+		assertThat(maxDifference(cut.transformDCT(small), cut.transformDCTNaive(small)), is(lessThan(EPSILON)));
+	}
+
+	@Test
+	public void testDCValue() throws Exception {
+		double sum = 0;
+
+		for (double[] row : matrix) {
+			for (double value : row) {
+				sum += value;
+			}
+		}
+
+		// the DC term is the sum scaled by 1/sqrt(2) * 1/sqrt(2) / 4
+		assertThat(cut.transformDCT(matrix)[0][0], is(closeTo(sum / 8.0, EPSILON)));
+	}
+
+	@Test
+	public void testDctAverage() throws Exception {
+		double[][] dct = { { 100, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 } };
+
+		assertThat(TransformHelper.dctAverage(dct, 2), is(closeTo(8 / 3.0, EPSILON)));
+	}
+
+	@Test
+	public void testDctAverageFlat() throws Exception {
+		double[] dct = { 100, 1, 2, 3, 4, 5, 6, 7, 8 };
+
+		assertThat(TransformHelper.dctAverage(dct, 3, 2), is(closeTo(8 / 3.0, EPSILON)));
+	}
+
+	@Test
+	public void testTransformDCTFlat() throws Exception {
+		for (DctStrategy strategy : DctStrategy.values()) {
+			cut = new TransformHelper(MATRIX_SIZE, strategy);
+			double[][] expected = cut.transformDCT(matrix);
+			double[] flat = new double[MATRIX_SIZE * MATRIX_SIZE];
+			double[] result = new double[MATRIX_SIZE * MATRIX_SIZE];
+
+			for (int x = 0; x < MATRIX_SIZE; x++) {
+				System.arraycopy(matrix[x], 0, flat, x * MATRIX_SIZE, MATRIX_SIZE);
+			}
+
+			// second call reuses the work space
+			cut.transformDCT(flat, result);
+			cut.transformDCT(flat, result);
+
+			for (int x = 0; x < MATRIX_SIZE; x++) {
+				for (int y = 0; y < MATRIX_SIZE; y++) {
+					assertThat(result[x * MATRIX_SIZE + y], is(expected[x][y]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFastMatchesNaive() throws Exception {
+		cut = new TransformHelper(MATRIX_SIZE, DctStrategy.FAST);
+
+		assertThat(maxDifference(cut.transformDCT(matrix), cut.transformDCTNaive(matrix)), is(lessThan(EPSILON)));
+	}
+
+	@Test
+	public void testFastNonSymmetric() throws Exception {
+		cut = new TransformHelper(MATRIX_SIZE, DctStrategy.FAST);
+		matrix[3][17] = 1000;
+
+		assertThat(maxDifference(cut.transformDCT(matrix), cut.transformDCTNaive(matrix)), is(lessThan(EPSILON)));
+	}
+
+	@Test
+	public void testFastSmallSizes() throws Exception {
+		for (int size = 1; size <= 16; size *= 2) {
+			cut = new TransformHelper(size, DctStrategy.FAST);
+			double[][] small = new double[size][size];
+			small[size - 1][0] = 255;
+			small[0][size / 2] = 17;
+
+			assertThat(maxDifference(cut.transformDCT(small), cut.transformDCTNaive(small)), is(lessThan(EPSILON)));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFastNotPowerOfTwo() throws Exception {
+		new TransformHelper(24, DctStrategy.FAST);
+	}
+
+	@Test
+	public void testNaiveStrategy() throws Exception {
+		cut = new TransformHelper(MATRIX_SIZE, DctStrategy.NAIVE);
+
+		assertThat(cut.transformDCT(matrix), is(cut.transformDCTNaive(matrix)));
+	}
+
+	@Test
+	public void testDefaultStrategy() throws Exception {
+		assertThat(cut.getStrategy(), is(DctStrategy.SEPARABLE));
+	}
+
+	@Test
+	public void testVerify() throws Exception {
+		for (DctStrategy strategy : DctStrategy.values()) {
+			cut = new TransformHelper(MATRIX_SIZE, strategy);
+			cut.setVerify(true);
+
+			cut.transformDCT(matrix);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testVerifyMismatch() throws Exception {
+		cut = new TransformHelper(MATRIX_SIZE) {
+			@Override
+			void transformDCTSeparable(double[] matrix, double[] F, Workspace work) {
+				super.transformDCTSeparable(matrix, F, work);
+				F[F.length - 1] += 2 * VERIFY_EPSILON;
+			}
+		};
+		cut.setVerify(true);
+
+		cut.transformDCT(matrix);
+	}
+}
@@ -55,6 +55,32 @@ public class ConvertTest {
 		assertThat(hex, is("C0"));
 	}
 
+	@Test
+	public final void testHexToByteNull() {
+		assertNull(Convert.hexToByte(null));
+	}
+
+	@Test
+	public final void testHexToByte() {
+		assertThat(Convert.hexToByte("00FFaAc0"), is(new byte[] { 0, -1, -86, -64 }));
+	}
+
+	@Test
+	public final void testHexToByteRoundTrip() {
+		byte[] data = { 12, 45, 6, 12, 99, -128 };
+		assertThat(Convert.hexToByte(Convert.byteToHex(data)), is(data));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testHexToByteOddLength() {
+		Convert.hexToByte("ABC");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testHexToByteInvalid() {
+		Convert.hexToByte("XY");
+	}
+
 	@Test
 	public final void testStringToIntNull() {
 		int value = Convert.stringToInt(null, 3);
@@ -0,0 +1,154 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.util;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageUtilTest {
+	private static final int WIDTH = 7;
+	private static final int HEIGHT = 5;
+	private static final double EPSILON = 1e-9;
+
+	private BufferedImage source;
+
+	@Before
+	public void setUp() throws Exception {
+		Random random = new Random(42);
+		source = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				source.setRGB(x, y, random.nextInt(0x1000000));
+			}
+		}
+	}
+
+	private static BufferedImage convert(BufferedImage image, int type) {
+		BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), type);
+		converted.getGraphics().drawImage(image, 0, 0, null);
+		return converted;
+	}
+
+	private static double expectedLuminance(BufferedImage image, int x, int y) {
+		int pixel = image.getRGB(x, y);
+		return 0.299 * ((pixel >> 16) & 0xff) + 0.587 * ((pixel >> 8) & 0xff) + 0.114 * (pixel & 0xff);
+	}
+
+	private static void assertLuminance(BufferedImage image) {
+		int height = image.getHeight();
+		double[] values = ImageUtil.toLuminance(image, new double[image.getWidth() * height]);
+
+		for (int x = 0; x < image.getWidth(); x++) {
+			for (int y = 0; y < height; y++) {
+				assertThat(values[x * height + y], is(closeTo(expectedLuminance(image, x, y), EPSILON)));
+			}
+		}
+	}
+
+	@Test
+	public void testLuminanceIntRgb() throws Exception {
+		assertLuminance(source);
+	}
+
+	@Test
+	public void testLuminanceIntArgb() throws Exception {
+		assertLuminance(convert(source, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	@Test
+	public void testLuminance3ByteBgr() throws Exception {
+		assertLuminance(convert(source, BufferedImage.TYPE_3BYTE_BGR));
+	}
+
+	@Test
+	public void testLuminanceGeneric() throws Exception {
+		assertLuminance(convert(source, BufferedImage.TYPE_USHORT_565_RGB));
+	}
+
+	@Test
+	public void testLuminanceSubimage() throws Exception {
+		assertLuminance(source.getSubimage(2, 1, 4, 3));
+		assertLuminance(convert(source, BufferedImage.TYPE_3BYTE_BGR).getSubimage(2, 1, 4, 3));
+	}
+
+	@Test
+	public void testLuminanceByteGray() throws Exception {
+		BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+		gray.getRaster().setSample(3, 2, 0, 200);
+		gray.getRaster().setSample(6, 4, 0, 17);
+		double[] values = ImageUtil.toLuminance(gray.getSubimage(1, 1, 6, 4), new double[24]);
+
+		assertThat(values[2 * 4 + 1], is(200.0));
+		assertThat(values[5 * 4 + 3], is(17.0));
+		assertThat(values[0], is(0.0));
+	}
+
+	@Test
+	public void testToDoubleArrayLayout() throws Exception {
+		double[][] matrix = ImageUtil.toDoubleMatrix(source);
+		double[] flat = ImageUtil.toDoubleArray(source, new double[WIDTH * HEIGHT]);
+
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				assertThat(flat[x * HEIGHT + y], is(matrix[x][y]));
+			}
+		}
+	}
+
+	@Test
+	public void testLuminanceScaledSameSize() throws Exception {
+		double[] expected = ImageUtil.toLuminance(source, new double[WIDTH * HEIGHT]);
+		double[] scaled = ImageUtil.toLuminanceScaled(source, WIDTH, HEIGHT, new double[WIDTH * HEIGHT]);
+
+		for (int i = 0; i < expected.length; i++) {
+			assertThat(scaled[i], is(closeTo(expected[i], EPSILON)));
+		}
+	}
+
+	@Test
+	public void testLuminanceScaledHalf() throws Exception {
+		BufferedImage image = source.getSubimage(0, 0, 6, 4);
+		double[] full = ImageUtil.toLuminance(image, new double[24]);
+		double[] scaled = ImageUtil.toLuminanceScaled(image, 3, 2, new double[6]);
+
+		for (int x = 0; x < 3; x++) {
+			for (int y = 0; y < 2; y++) {
+				double sum = full[(2 * x) * 4 + 2 * y] + full[(2 * x) * 4 + 2 * y + 1] + full[(2 * x + 1) * 4 + 2 * y]
+						+ full[(2 * x + 1) * 4 + 2 * y + 1];
+
+				assertThat(scaled[x * 2 + y], is(closeTo(sum / 4, EPSILON)));
+			}
+		}
+	}
+
+	@Test
+	public void testLuminanceScaledKeepsMean() throws Exception {
+		double[] full = ImageUtil.toLuminance(source, new double[WIDTH * HEIGHT]);
+		double[] scaled = ImageUtil.toLuminanceScaled(source, 3, 2, new double[6]);
+
+		assertThat(Arrays.stream(scaled).average().getAsDouble(), is(closeTo(Arrays.stream(full).average().getAsDouble(), EPSILON)));
+	}
+
+	@Test
+	public void testLuminanceScaledTransparent() throws Exception {
+		BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, 0xffffffff);
+		image.setRGB(1, 0, 0x00ffffff);
+
+		double[] scaled = ImageUtil.toLuminanceScaled(image, 1, 1, new double[1]);
+
+		assertThat(scaled[0], is(closeTo(127.5, EPSILON)));
+	}
+}
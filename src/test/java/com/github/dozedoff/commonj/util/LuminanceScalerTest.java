@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ * Copyright (c) 2017 Nicholas Wright
+ * http://opensource.org/licenses/MIT
+ */
+package com.github.dozedoff.commonj.util;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LuminanceScalerTest {
+	private LuminanceScaler cut;
+
+	@Before
+	public void setUp() throws Exception {
+		cut = new LuminanceScaler(4, 3);
+	}
+
+	private static BufferedImage randomImage(int width, int height, long seed) {
+		Random random = new Random(seed);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, random.nextInt(0x1000000));
+			}
+		}
+
+		return image;
+	}
+
+	private static double[] scaleNew(BufferedImage image) {
+		return ImageUtil.toLuminanceScaled(image, 4, 3, new double[12]);
+	}
+
+	@Test
+	public void testReuseSameSize() throws Exception {
+		BufferedImage first = randomImage(17, 9, 1);
+		BufferedImage second = randomImage(17, 9, 2);
+		double[] values = new double[12];
+
+		cut.scale(first, values);
+
+		assertThat(cut.scale(second, values), is(scaleNew(second)));
+	}
+
+	@Test
+	public void testReuseDifferentSize() throws Exception {
+		BufferedImage large = randomImage(40, 30, 1);
+		BufferedImage small = randomImage(7, 5, 2);
+		BufferedImage wide = randomImage(50, 2, 3);
+		double[] values = new double[12];
+
+		assertThat(cut.scale(large, values), is(scaleNew(large)));
+		assertThat(cut.scale(small, values), is(scaleNew(small)));
+		assertThat(cut.scale(wide, values), is(scaleNew(wide)));
+	}
+}